@@ -54,6 +54,7 @@
 
 package org.prismlauncher.legacy;
 
+import org.prismlauncher.diagnostics.ExitWatchdog;
 import org.prismlauncher.utils.logging.Log;
 
 import java.applet.Applet;
@@ -158,21 +159,8 @@ final class LegacyFrame extends JFrame {
     private final class ForceExitHandler extends WindowAdapter {
         @Override
         public void windowClosing(WindowEvent event) {
-            // FIXME better solution
-
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        Thread.sleep(30000L);
-                    } catch (InterruptedException e) {
-                        Log.error("Thread interrupted", e);
-                    }
-
-                    Log.warning("Forcing exit");
-                    System.exit(0);
-                }
-            }).start();
+            // forces the exit if stopping the applet or shutting down hangs
+            ExitWatchdog.start("window closed");
 
             if (launcher != null) {
                 launcher.stop();
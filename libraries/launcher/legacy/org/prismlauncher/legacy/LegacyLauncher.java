@@ -55,6 +55,8 @@
 
 package org.prismlauncher.legacy;
 
+import org.prismlauncher.diagnostics.ExitWatchdog;
+import org.prismlauncher.diagnostics.HeapDump;
 import org.prismlauncher.launcher.impl.AbstractLauncher;
 import org.prismlauncher.utils.Parameters;
 import org.prismlauncher.utils.ReflectionUtils;
@@ -120,7 +122,15 @@ final class LegacyLauncher extends AbstractLauncher {
         // find and invoke the main method, this time without size parameters - in all
         // versions that support applets, these are ignored
         MethodHandle method = ReflectionUtils.findMainMethod(main);
-        method.invokeExact(gameArgs.toArray(new String[0]));
+
+        try {
+            method.invokeExact(gameArgs.toArray(new String[0]));
+        } catch (OutOfMemoryError e) {
+            HeapDump.onOutOfMemory(e);
+            throw e;
+        }
+
+        ExitWatchdog.mark("main method returned");
     }
 
     private static Applet createAppletClass(String clazz) throws Throwable {
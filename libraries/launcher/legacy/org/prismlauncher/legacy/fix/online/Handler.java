@@ -35,6 +35,7 @@
 
 package org.prismlauncher.legacy.fix.online;
 
+import org.prismlauncher.diagnostics.Counters;
 import org.prismlauncher.legacy.utils.url.UrlUtils;
 
 import java.io.IOException;
@@ -51,6 +52,15 @@ final class Handler extends URLStreamHandler {
 
     @Override
     protected URLConnection openConnection(URL address, Proxy proxy) throws IOException {
+        try {
+            return openFixedConnection(address, proxy);
+        } catch (IOException | RuntimeException e) {
+            Counters.increment("online_fix_errors");
+            throw e;
+        }
+    }
+
+    private static URLConnection openFixedConnection(URL address, Proxy proxy) throws IOException {
         URLConnection result;
 
         // try various fixes...
@@ -63,6 +73,7 @@ final class Handler extends URLStreamHandler {
             return result;
 
         // ...then give up and make the request directly
+        Counters.increment("online_fix_passthrough_requests");
         return UrlUtils.openConnection(address, proxy);
     }
 }
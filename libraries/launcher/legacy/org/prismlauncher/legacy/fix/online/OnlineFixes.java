@@ -63,6 +63,9 @@ public final class OnlineFixes implements URLStreamHandlerFactory {
             return;
         }
 
+        SkinCache.apply(params);
+        SkinFix.apply(params);
+
         try {
             URL.setURLStreamHandlerFactory(new OnlineFixes());
         } catch (Error e) {
@@ -35,6 +35,7 @@
 
 package org.prismlauncher.legacy.fix.online;
 
+import org.prismlauncher.diagnostics.Counters;
 import org.prismlauncher.legacy.utils.url.UrlUtils;
 
 import java.io.IOException;
@@ -49,6 +50,8 @@ public final class OnlineModeFix {
         if (!(address.getHost().equals("www.minecraft.net") && address.getPath().equals("/game/joinserver.jsp")))
             return null;
 
+        Counters.increment("online_fix_join_requests");
+
         // change it to "https://session.minecraft.net/game/joinserver.jsp?user=..."
         // this seems to be the modern version of the same endpoint...
         // maybe Mojang planned to patch old versions of the game to use it
@@ -0,0 +1,317 @@
+package org.prismlauncher.legacy.fix.online;
+
+import org.prismlauncher.legacy.utils.api.MojangApi;
+import org.prismlauncher.legacy.utils.api.Texture;
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Caches which textures each player has, and skins after conversion to the old
+ * format, both in memory and on disk. The disk cache is shared by all instances,
+ * in the user's cache directory by default, and also holds the UUIDs cached by
+ * {@link MojangApi}. It is per user, as anyone able to write to it could choose
+ * the textures shown and the URLs they are downloaded from.
+ * <p>
+ * Converted skins are stored by a hash of the texture URL, which changes
+ * whenever the skin does, so they never expire. Which textures a player has
+ * expires after a while, as players can change skins.
+ */
+final class SkinCache {
+    private static final int DEFAULT_TTL = 3600;
+    private static final int MAX_IMAGES = 64, MAX_PROFILES = 256;
+
+    private static final Map<String, byte[]> IMAGES = new LruMap<>(MAX_IMAGES);
+    private static final Map<String, Profile> PROFILES = new LruMap<>(MAX_PROFILES);
+
+    private static boolean enabled;
+    // null if only caching in memory
+    private static Path directory;
+    private static long ttl = DEFAULT_TTL * 1000L;
+
+    static synchronized void apply(Parameters params) {
+        if (!params.getBoolean("skinCache", true))
+            return;
+
+        int seconds = params.getInt("skinCacheTtl", DEFAULT_TTL, 0, Integer.MAX_VALUE);
+
+        String configured = params.getString("skinCacheDir", null);
+
+        enabled = true;
+        ttl = seconds * 1000L;
+        directory = configured != null ? Paths.get(configured) : getDefaultDirectory();
+
+        try {
+            Files.createDirectories(directory.resolve("profiles"));
+            Files.createDirectories(directory.resolve("skins"));
+            Files.createDirectories(directory.resolve("uuids"));
+
+            MojangApi.setCacheDirectory(directory.resolve("uuids"));
+        } catch (IOException e) {
+            Log.warning("Could not create the skin cache, only caching skins in memory: " + e);
+            directory = null;
+        }
+    }
+
+    static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    private static Path getDefaultDirectory() {
+        String home = System.getProperty("user.home");
+        String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        Path cache;
+
+        if (os.startsWith("windows") && System.getenv("LOCALAPPDATA") != null)
+            cache = Paths.get(System.getenv("LOCALAPPDATA"));
+        else if (os.startsWith("mac"))
+            cache = Paths.get(home, "Library", "Caches");
+        else if (System.getenv("XDG_CACHE_HOME") != null && !System.getenv("XDG_CACHE_HOME").isEmpty())
+            cache = Paths.get(System.getenv("XDG_CACHE_HOME"));
+        else
+            cache = Paths.get(home, ".cache");
+
+        return cache.resolve("prismlauncher-skins");
+    }
+
+    /**
+     * Finds the textures a player was last known to have.
+     *
+     * @param player The player's name
+     * @return The textures, or <code>null</code> if unknown or expired
+     */
+    static synchronized Profile getProfile(String player) {
+        if (!enabled)
+            return null;
+
+        String key = player.toLowerCase();
+        Profile profile = PROFILES.get(key);
+
+        if (profile == null && directory != null) {
+            profile = readProfile(getProfileFile(key));
+
+            if (profile != null)
+                PROFILES.put(key, profile);
+        }
+
+        if (profile == null || System.currentTimeMillis() - profile.time > ttl)
+            return null;
+
+        return profile;
+    }
+
+    /**
+     * Records the textures a player has.
+     *
+     * @param player  The player's name
+     * @param profile The textures
+     */
+    static synchronized void putProfile(String player, Profile profile) {
+        if (!enabled)
+            return;
+
+        String key = player.toLowerCase();
+        PROFILES.put(key, profile);
+
+        if (directory == null)
+            return;
+
+        Properties properties = new Properties();
+        properties.setProperty("time", Long.toString(profile.time));
+
+        if (profile.skin != null) {
+            properties.setProperty("skin", profile.skin.getUrl().toString());
+            properties.setProperty("slim", Boolean.toString(profile.skin.isSlim()));
+        }
+
+        if (profile.cape != null)
+            properties.setProperty("cape", profile.cape.getUrl().toString());
+
+        try {
+            Path temp = Files.createTempFile(directory.resolve("profiles"), null, null);
+
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+
+            move(temp, getProfileFile(key));
+        } catch (IOException e) {
+            Log.debug("Could not cache the textures of " + player + ": " + e);
+        }
+    }
+
+    /**
+     * Finds a converted skin.
+     *
+     * @param texture The texture it was converted from
+     * @return The converted skin as a PNG, or <code>null</code> if not cached
+     */
+    static synchronized byte[] getImage(Texture texture) {
+        if (!enabled)
+            return null;
+
+        String key = getImageKey(texture);
+        byte[] image = IMAGES.get(key);
+
+        if (image != null || directory == null)
+            return image;
+
+        Path file = getImageFile(key);
+
+        try {
+            if (Files.isRegularFile(file)) {
+                image = Files.readAllBytes(file);
+                IMAGES.put(key, image);
+            }
+        } catch (IOException e) {
+            Log.debug("Could not read cached skin " + file + ": " + e);
+        }
+
+        return image;
+    }
+
+    /**
+     * Stores a converted skin.
+     *
+     * @param texture The texture it was converted from
+     * @param image   The converted skin as a PNG
+     */
+    static synchronized void putImage(Texture texture, byte[] image) {
+        if (!enabled)
+            return;
+
+        String key = getImageKey(texture);
+        IMAGES.put(key, image);
+
+        if (directory == null)
+            return;
+
+        try {
+            Path temp = Files.createTempFile(directory.resolve("skins"), null, null);
+            Files.write(temp, image);
+            move(temp, getImageFile(key));
+        } catch (IOException e) {
+            Log.debug("Could not cache skin " + texture.getUrl() + ": " + e);
+        }
+    }
+
+    private static Profile readProfile(Path file) {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        Properties properties = new Properties();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+
+            long time = Long.parseLong(properties.getProperty("time"));
+            String skin = properties.getProperty("skin");
+            String cape = properties.getProperty("cape");
+
+            return new Profile(skin != null ? new Texture(new URL(skin), Boolean.parseBoolean(properties.getProperty("slim"))) : null,
+                    cape != null ? new Texture(new URL(cape), false) : null, time);
+        } catch (IOException | RuntimeException e) {
+            // another instance may have left it half written if it crashed
+            return null;
+        }
+    }
+
+    // other instances may read the file at any time, so replace it in one go
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private static Path getProfileFile(String key) {
+        return directory.resolve("profiles").resolve(hash(key) + ".properties");
+    }
+
+    private static Path getImageFile(String key) {
+        return directory.resolve("skins").resolve(key + ".png");
+    }
+
+    private static String getImageKey(Texture texture) {
+        // the conversion depends on the model
+        return hash(texture.getUrl().toString()) + (texture.isSlim() ? "-slim" : "");
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest)
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError("SHA-1 should be supported", e);
+        }
+    }
+
+    /**
+     * The textures of a player.
+     */
+    static final class Profile {
+        private final Texture skin, cape;
+        private final long time;
+
+        Profile(Texture skin, Texture cape) {
+            this(skin, cape, System.currentTimeMillis());
+        }
+
+        private Profile(Texture skin, Texture cape, long time) {
+            this.skin = skin;
+            this.cape = cape;
+            this.time = time;
+        }
+
+        /**
+         * @return The skin, or <code>null</code> if the player has none
+         */
+        Texture getSkin() {
+            return skin;
+        }
+
+        /**
+         * @return The cape, or <code>null</code> if the player has none
+         */
+        Texture getCape() {
+            return cape;
+        }
+    }
+
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        LruMap(int capacity) {
+            super(16, 0.75F, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -52,10 +52,13 @@
 
 package org.prismlauncher.legacy.fix.online;
 
+import org.prismlauncher.diagnostics.Counters;
+import org.prismlauncher.legacy.utils.SingleFlight;
 import org.prismlauncher.legacy.utils.api.MojangApi;
 import org.prismlauncher.legacy.utils.api.Texture;
 import org.prismlauncher.legacy.utils.url.ByteArrayUrlConnection;
 import org.prismlauncher.legacy.utils.url.UrlUtils;
+import org.prismlauncher.utils.Parameters;
 
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
@@ -63,76 +66,296 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.Proxy;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.ImageIO;
 
 final class SkinFix {
-    static URLConnection openConnection(URL address, Proxy proxy) throws IOException {
-        String skinOwner = findSkinOwner(address);
-        if (skinOwner != null)
+    private static final int DEFAULT_DEADLINE = 3000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 5000;
+
+    private static final SingleFlight<String, SkinCache.Profile> PROFILES = new SingleFlight<>();
+    private static final SingleFlight<String, byte[]> IMAGES = new SingleFlight<>();
+
+    private static final ThreadPoolExecutor FETCHER = new ThreadPoolExecutor(16, 16, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "NewLaunch skin fetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static volatile long deadline = DEFAULT_DEADLINE;
+
+    static {
+        FETCHER.allowCoreThreadTimeOut(true);
+    }
+
+    static void apply(Parameters params) {
+        int timeout = params.getInt("skinTimeout", MojangApi.getTimeout(), 1, Integer.MAX_VALUE);
+        // 0 means wait for as long as the requests take
+        int skinDeadline = params.getInt("skinDeadline", DEFAULT_DEADLINE, 0, Integer.MAX_VALUE);
+
+        MojangApi.setTimeout(timeout);
+        deadline = skinDeadline;
+    }
+
+    static URLConnection openConnection(URL address, final Proxy proxy) throws IOException {
+        final String skinOwner = findSkinOwner(address);
+        if (skinOwner != null) {
+            Counters.increment("online_fix_skin_requests");
+
             // we need to correct the skin
-            return getSkinConnection(skinOwner, proxy);
+            byte[] image;
+
+            try {
+                image = fetch(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return getSkin(skinOwner, proxy);
+                    }
+                });
+            } catch (SocketTimeoutException e) {
+                return ByteArrayUrlConnection.notFound();
+            }
 
-        String capeOwner = findCapeOwner(address);
+            if (image == null)
+                return null;
+
+            return new ByteArrayUrlConnection(image);
+        }
+
+        final String capeOwner = findCapeOwner(address);
         if (capeOwner != null) {
-            // since we do not need to process the image, open a direct connection bypassing
-            // Handler
-            Texture texture = MojangApi.getTexture(MojangApi.getUuid(capeOwner), "CAPE");
-            if (texture == null)
+            Counters.increment("online_fix_cape_requests");
+
+            byte[] image;
+
+            try {
+                // downloaded here rather than by the game, so the deadline covers it too
+                image = fetch(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        Texture texture = getProfile(capeOwner).getCape();
+                        if (texture == null)
+                            return null;
+
+                        try (InputStream in = openTexture(texture, proxy).getInputStream()) {
+                            return readAll(in);
+                        }
+                    }
+                });
+            } catch (SocketTimeoutException e) {
+                return ByteArrayUrlConnection.notFound();
+            }
+
+            if (image == null)
                 return null;
 
-            return UrlUtils.openConnection(texture.getUrl(), proxy);
+            return new ByteArrayUrlConnection(image);
         }
 
         return null;
     }
 
-    private static URLConnection getSkinConnection(String owner, Proxy proxy) throws IOException {
-        Texture texture = MojangApi.getTexture(MojangApi.getUuid(owner), "SKIN");
+    /**
+     * Runs an operation in the background, giving up on it once the deadline has
+     * passed so that the game does not stall. If it then fails, it is retried a
+     * few times so that its result is cached for the next request, unless the
+     * skin cache is disabled, as nothing would keep the result.
+     *
+     * @param operation The operation
+     * @return The result
+     * @throws SocketTimeoutException If the deadline passed, or a request timed
+     *                                out
+     * @throws IOException            If the operation failed
+     */
+    private static <T> T fetch(final Callable<T> operation) throws IOException {
+        final AtomicBoolean abandoned = new AtomicBoolean();
+
+        Future<T> future = FETCHER.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                for (int attempt = 1;; attempt++) {
+                    try {
+                        return operation.call();
+                    } catch (IOException e) {
+                        if (!abandoned.get() || attempt == MAX_ATTEMPTS || !SkinCache.isEnabled())
+                            throw e;
+
+                        Thread.sleep(RETRY_DELAY * attempt);
+                    }
+                }
+            }
+        });
+
+        try {
+            long limit = deadline;
+
+            if (limit == 0)
+                return future.get();
+
+            return future.get(limit, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandoned.set(true);
+            Counters.increment("online_fix_deadline_misses");
+
+            throw new SocketTimeoutException("Mojang API did not respond within " + deadline + "ms");
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Finds the skin of a player, converted to the old format.
+     *
+     * @param owner The player's name
+     * @param proxy The proxy to download the skin through
+     * @return The skin as a PNG, or <code>null</code> if the player has none
+     * @throws IOException If the skin could not be fetched
+     */
+    private static byte[] getSkin(String owner, final Proxy proxy) throws IOException {
+        final Texture texture = getProfile(owner).getSkin();
         if (texture == null)
             return null;
 
-        URLConnection connection = UrlUtils.openConnection(texture.getUrl(), proxy);
-        try (InputStream in = connection.getInputStream()) {
-            // thank you ahnewark!
-            // this is heavily based on
-            // https://github.com/ahnewark/MineOnline/blob/4f4f86f9d051e0a6fd7ff0b95b2a05f7437683d7/src/main/java/gg/codie/mineonline/gui/textures/TextureHelper.java#L17
-            BufferedImage image = ImageIO.read(in);
-            Graphics2D graphics = image.createGraphics();
-            graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
-
-            BufferedImage subimage;
-
-            if (image.getHeight() > 32) {
-                // flatten second layers
-                subimage = image.getSubimage(0, 32, 56, 16);
-                graphics.drawImage(subimage, 0, 16, null);
+        byte[] image = SkinCache.getImage(texture);
+
+        if (image != null) {
+            Counters.increment("online_fix_skin_cache_hits");
+            return image;
+        }
+
+        // the game may request the same skin from several threads
+        return IMAGES.get(texture.getUrl() + (texture.isSlim() ? " slim" : ""), new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                byte[] result;
+
+                try (InputStream in = openTexture(texture, proxy).getInputStream()) {
+                    result = convert(in, texture.isSlim());
+                }
+
+                SkinCache.putImage(texture, result);
+                return result;
             }
+        });
+    }
+
+    /**
+     * Finds the skin and cape of a player, fetching the profile once for both and
+     * sharing it among concurrent requests.
+     *
+     * @param owner The player's name
+     * @return The textures
+     * @throws IOException If the profile could not be fetched
+     */
+    private static SkinCache.Profile getProfile(final String owner) throws IOException {
+        SkinCache.Profile profile = SkinCache.getProfile(owner);
+        if (profile != null)
+            return profile;
 
-            if (texture.isSlim()) {
-                // convert slim to classic
-                subimage = image.getSubimage(45, 16, 9, 16);
-                graphics.drawImage(subimage, 46, 16, null);
+        return PROFILES.get(owner.toLowerCase(), new Callable<SkinCache.Profile>() {
+            @Override
+            public SkinCache.Profile call() throws IOException {
+                Counters.increment("online_fix_profile_requests");
 
-                subimage = image.getSubimage(49, 16, 2, 4);
-                graphics.drawImage(subimage, 50, 16, null);
+                String uuid = MojangApi.getUuid(owner);
+                Map<String, Object> textures = uuid != null ? MojangApi.getTextures(uuid) : null;
+                SkinCache.Profile result =
+                        new SkinCache.Profile(MojangApi.getTexture(textures, "SKIN"), MojangApi.getTexture(textures, "CAPE"));
 
-                subimage = image.getSubimage(53, 20, 2, 12);
-                graphics.drawImage(subimage, 54, 20, null);
+                SkinCache.putProfile(owner, result);
+                return result;
             }
+        });
+    }
 
-            graphics.dispose();
+    private static URLConnection openTexture(Texture texture, Proxy proxy) throws IOException {
+        URLConnection connection = UrlUtils.openConnection(texture.getUrl(), proxy);
+        connection.setConnectTimeout(MojangApi.getTimeout());
+        connection.setReadTimeout(MojangApi.getTimeout());
+        return connection;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = in.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+
+        return out.toByteArray();
+    }
+
+    private static byte[] convert(InputStream in, boolean slim) throws IOException {
+        // thank you ahnewark!
+        // this is heavily based on
+        // https://github.com/ahnewark/MineOnline/blob/4f4f86f9d051e0a6fd7ff0b95b2a05f7437683d7/src/main/java/gg/codie/mineonline/gui/textures/TextureHelper.java#L17
+        BufferedImage image = ImageIO.read(in);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
 
-            // crop the image - old versions disregard all secondary layers besides the hat
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            image = image.getSubimage(0, 0, 64, 32);
-            ImageIO.write(image, "png", out);
+        BufferedImage subimage;
 
-            return new ByteArrayUrlConnection(out.toByteArray());
+        if (image.getHeight() > 32) {
+            // flatten second layers
+            subimage = image.getSubimage(0, 32, 56, 16);
+            graphics.drawImage(subimage, 0, 16, null);
         }
+
+        if (slim) {
+            // convert slim to classic
+            subimage = image.getSubimage(45, 16, 9, 16);
+            graphics.drawImage(subimage, 46, 16, null);
+
+            subimage = image.getSubimage(49, 16, 2, 4);
+            graphics.drawImage(subimage, 50, 16, null);
+
+            subimage = image.getSubimage(53, 20, 2, 12);
+            graphics.drawImage(subimage, 54, 20, null);
+        }
+
+        graphics.dispose();
+
+        // crop the image - old versions disregard all secondary layers besides the hat
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        image = image.getSubimage(0, 0, 64, 32);
+        ImageIO.write(image, "png", out);
+
+        return out.toByteArray();
     }
 
     private static String findSkinOwner(URL address) {
@@ -0,0 +1,92 @@
+package org.prismlauncher.legacy.utils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Shares the result of a slow operation, such as a request, among all callers
+ * asking for the same key while it is in progress, instead of repeating it for
+ * each of them. Results are not kept once the operation completes.
+ *
+ * @param <K> The key type
+ * @param <V> The result type
+ */
+public final class SingleFlight<K, V> {
+    private final Map<K, Call<V>> calls = new HashMap<>();
+
+    /**
+     * Runs the operation for a key, or waits for the one already running.
+     *
+     * @param key       The key
+     * @param operation The operation, which is only run if none is in progress
+     *                  for the key
+     * @return The result
+     * @throws IOException If the operation failed, wrapping any other checked
+     *                     exception
+     */
+    public V get(K key, Callable<V> operation) throws IOException {
+        Call<V> call;
+        boolean owner = false;
+
+        synchronized (calls) {
+            call = calls.get(key);
+
+            if (call == null) {
+                call = new Call<>();
+                calls.put(key, call);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            try {
+                call.complete(operation.call(), null);
+            } catch (Throwable e) {
+                call.complete(null, e);
+            } finally {
+                synchronized (calls) {
+                    calls.remove(key);
+                }
+            }
+        }
+
+        return call.await();
+    }
+
+    private static final class Call<V> {
+        private boolean done;
+        private V result;
+        private Throwable error;
+
+        synchronized void complete(V value, Throwable failure) {
+            result = value;
+            error = failure;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized V await() throws IOException {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for another thread");
+                }
+            }
+
+            if (error instanceof IOException)
+                throw (IOException) error;
+            if (error instanceof RuntimeException)
+                throw (RuntimeException) error;
+            if (error instanceof Error)
+                throw (Error) error;
+            if (error != null)
+                throw new IOException(error);
+
+            return result;
+        }
+    }
+}
@@ -40,7 +40,10 @@ import org.prismlauncher.legacy.utils.json.JsonParser;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
@@ -48,38 +51,96 @@ import java.util.Map;
  */
 @SuppressWarnings("unchecked")
 public final class MojangApi {
+    private static final int DEFAULT_TIMEOUT = 5000;
+
+    private static volatile int timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Sets the connect and read timeouts for each request to the API.
+     *
+     * @param millis The timeout in ms
+     */
+    public static void setTimeout(int millis) {
+        timeout = millis;
+    }
+
+    public static int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Opens a connection with the configured timeouts.
+     *
+     * @param url The URL
+     * @return The connection
+     * @throws IOException If the connection could not be opened
+     */
+    static URLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        return connection;
+    }
+
+    /**
+     * Sets where to cache UUIDs, so they are shared with other instances.
+     *
+     * @param directory The directory, which must exist
+     */
+    public static void setCacheDirectory(Path directory) {
+        UuidResolver.setCacheDirectory(directory);
+    }
+
+    /**
+     * Finds the UUID of a player. Results are cached, and lookups made at about
+     * the same time are batched.
+     *
+     * @param username The player's name
+     * @return The UUID without dashes, or <code>null</code> if there is no such
+     *         player
+     * @throws IOException If the lookup failed
+     */
     public static String getUuid(String username) throws IOException {
-        try (InputStream in = new URL("https://api.mojang.com/users/profiles/minecraft/" + username).openStream()) {
-            Map<String, Object> map = (Map<String, Object>) JsonParser.parse(in);
-            return (String) map.get("id");
-        }
+        return UuidResolver.getUuid(username);
     }
 
     public static Texture getTexture(String player, String id) throws IOException {
-        Map<String, Object> map = getTextures(player);
+        return getTexture(getTextures(player), id);
+    }
 
-        if (map != null) {
-            map = (Map<String, Object>) map.get(id);
-            if (map == null)
-                return null;
+    /**
+     * Reads a texture from the textures of a profile.
+     *
+     * @param textures The textures, as returned by {@link #getTextures(String)},
+     *                 or <code>null</code>
+     * @param id       The texture type, e.g. <code>SKIN</code> or <code>CAPE</code>
+     * @return The texture, or <code>null</code> if the player does not have one
+     * @throws MalformedURLException If the texture URL is invalid
+     */
+    public static Texture getTexture(Map<String, Object> textures, String id) throws MalformedURLException {
+        if (textures == null)
+            return null;
 
-            URL url = new URL((String) map.get("url"));
-            boolean slim = false;
+        Map<String, Object> map = (Map<String, Object>) textures.get(id);
+        if (map == null)
+            return null;
 
-            if (id.equals("SKIN")) {
-                map = (Map<String, Object>) map.get("metadata");
-                if (map != null && "slim".equals(map.get("model")))
-                    slim = true;
-            }
+        URL url = new URL((String) map.get("url"));
+        boolean slim = false;
 
-            return new Texture(url, slim);
+        if (id.equals("SKIN")) {
+            map = (Map<String, Object>) map.get("metadata");
+            if (map != null && "slim".equals(map.get("model")))
+                slim = true;
         }
 
-        return null;
+        return new Texture(url, slim);
     }
 
     public static Map<String, Object> getTextures(String player) throws IOException {
-        try (InputStream profileIn = new URL("https://sessionserver.mojang.com/session/minecraft/profile/" + player).openStream()) {
+        URL url = new URL("https://sessionserver.mojang.com/session/minecraft/profile/" + player);
+
+        try (InputStream profileIn = openConnection(url).getInputStream()) {
             Map<String, Object> profile = (Map<String, Object>) JsonParser.parse(profileIn);
 
             for (Map<String, Object> property : (Iterable<Map<String, Object>>) profile.get("properties")) {
@@ -0,0 +1,409 @@
+package org.prismlauncher.legacy.utils.api;
+
+import org.prismlauncher.legacy.utils.json.JsonParser;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves usernames to UUIDs, caching the results in memory and optionally on
+ * disk, including names which do not exist. Names which are not cached are
+ * looked up in batches of up to {@value #MAX_BATCH} using the bulk profiles
+ * endpoint: lookups arriving within {@value #GATHER_TIME} ms of each other, as
+ * when many players join, share requests.
+ * <p>
+ * The thread which starts a batch makes the requests until its own name has
+ * been looked up, and then hands any batches left to a background thread. The
+ * others wait for their results.
+ */
+@SuppressWarnings("unchecked")
+final class UuidResolver {
+    private static final String PROFILES_URL = "https://api.mojang.com/profiles/minecraft";
+    private static final int MAX_BATCH = 10;
+    private static final long GATHER_TIME = 50;
+    private static final int MAX_CACHED = 1024;
+    // names can be claimed by other players after a change, and unknown names can be registered
+    private static final long TTL = 24 * 60 * 60 * 1000L, NEGATIVE_TTL = 60 * 60 * 1000L;
+    // cached for names which do not exist
+    private static final String UNKNOWN = "";
+
+    private static final Object LOCK = new Object();
+    // lookups which have not completed, by lowercase name
+    private static final Map<String, Lookup> LOOKUPS = new LinkedHashMap<>();
+    private static final Map<String, CachedUuid> CACHE = new LinkedHashMap<String, CachedUuid>(16, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUuid> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    private static Path directory;
+    private static boolean batching;
+
+    static void setCacheDirectory(Path path) {
+        synchronized (LOCK) {
+            directory = path;
+        }
+    }
+
+    /**
+     * Finds the UUID of a player.
+     *
+     * @param name The player's name
+     * @return The UUID without dashes, or <code>null</code> if there is no such
+     *         player
+     * @throws IOException If the lookup failed
+     */
+    static String getUuid(String name) throws IOException {
+        String key = name.toLowerCase();
+        Lookup lookup;
+        boolean leader = false;
+
+        synchronized (LOCK) {
+            CachedUuid entry = getCached(key);
+
+            if (entry != null)
+                return entry.uuid.isEmpty() ? null : entry.uuid;
+
+            // the bulk endpoint rejects the whole request if any name is not a valid account name
+            if (!isValid(name)) {
+                CACHE.put(key, new CachedUuid(UNKNOWN, System.currentTimeMillis()));
+                return null;
+            }
+
+            lookup = LOOKUPS.get(key);
+
+            if (lookup == null) {
+                lookup = new Lookup(name);
+                LOOKUPS.put(key, lookup);
+            }
+
+            if (!batching)
+                batching = leader = true;
+        }
+
+        if (leader) {
+            try {
+                // give other lookups the chance to join the first batch
+                Thread.sleep(GATHER_TIME);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            runBatches(lookup, null);
+        }
+
+        return lookup.await();
+    }
+
+    /**
+     * Runs batches until there are no lookups left, or until the given lookup is
+     * done, after which the rest are run on a background thread.
+     *
+     * @param own   The lookup to stop after, or <code>null</code> to run them all
+     * @param batch A batch which has already been taken, or <code>null</code>
+     */
+    private static void runBatches(Lookup own, List<Lookup> batch) {
+        boolean completed = false;
+
+        try {
+            if (batch == null)
+                batch = takeBatch();
+
+            while (batch != null) {
+                if (own != null && own.isDone()) {
+                    handOff(batch);
+                    completed = true;
+                    return;
+                }
+
+                runBatch(batch);
+                batch = takeBatch();
+            }
+
+            completed = true;
+        } finally {
+            // if an error was thrown, fail what this thread is responsible for rather than leaving it waiting forever
+            if (!completed)
+                failRemaining(batch != null ? batch : Collections.<Lookup>emptyList());
+        }
+    }
+
+    private static void handOff(final List<Lookup> batch) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runBatches(null, batch);
+            }
+        }, "NewLaunch UUID lookups");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Takes up to {@value #MAX_BATCH} lookups which are not in progress, or stops
+     * batching if there are none.
+     *
+     * @return The lookups, or <code>null</code> if there were none
+     */
+    private static List<Lookup> takeBatch() {
+        List<Lookup> batch = new ArrayList<>(MAX_BATCH);
+
+        synchronized (LOCK) {
+            Iterator<Lookup> iterator = LOOKUPS.values().iterator();
+
+            // lookups stay in the map while in progress so others can wait for them
+            while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+                Lookup lookup = iterator.next();
+
+                if (!lookup.taken) {
+                    lookup.taken = true;
+                    batch.add(lookup);
+                }
+            }
+
+            if (batch.isEmpty()) {
+                batching = false;
+                return null;
+            }
+        }
+
+        return batch;
+    }
+
+    private static void runBatch(List<Lookup> batch) {
+        Map<String, String> result = null;
+        IOException error = null;
+
+        try {
+            result = fetch(batch);
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Unexpected response from " + PROFILES_URL, e);
+        }
+
+        for (Lookup lookup : batch) {
+            String key = lookup.name.toLowerCase();
+            String uuid = result != null ? result.get(key) : null;
+
+            // failures are not cached, so the next lookup tries again
+            if (result != null)
+                put(key, uuid != null ? uuid : UNKNOWN);
+
+            synchronized (LOCK) {
+                LOOKUPS.remove(key);
+            }
+
+            lookup.complete(uuid, error);
+        }
+    }
+
+    /**
+     * Fails the batch which was in progress and the lookups nobody has taken yet.
+     * Only called while this thread is still the one batching, so no other thread
+     * has taken any of them.
+     *
+     * @param batch The batch which was in progress
+     */
+    private static void failRemaining(List<Lookup> batch) {
+        List<Lookup> failed = new ArrayList<>(batch);
+
+        synchronized (LOCK) {
+            for (Lookup lookup : LOOKUPS.values()) {
+                if (!lookup.taken) {
+                    lookup.taken = true;
+                    failed.add(lookup);
+                }
+            }
+
+            for (Lookup lookup : failed) {
+                String key = lookup.name.toLowerCase();
+
+                if (LOOKUPS.get(key) == lookup)
+                    LOOKUPS.remove(key);
+            }
+
+            batching = false;
+        }
+
+        // lookups which already completed are left as they are
+        for (Lookup lookup : failed)
+            lookup.complete(null, new IOException("Could not look up " + lookup.name));
+    }
+
+    private static Map<String, String> fetch(List<Lookup> batch) throws IOException {
+        StringBuilder body = new StringBuilder("[");
+
+        for (Lookup lookup : batch) {
+            if (body.length() > 1)
+                body.append(',');
+
+            body.append('"').append(lookup.name.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+
+        body.append(']');
+
+        HttpURLConnection connection = (HttpURLConnection) MojangApi.openConnection(new URL(PROFILES_URL));
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+
+        try (InputStream in = connection.getInputStream()) {
+            for (Map<String, Object> profile : (Iterable<Map<String, Object>>) JsonParser.parse(in))
+                result.put(((String) profile.get("name")).toLowerCase(), (String) profile.get("id"));
+        }
+
+        return result;
+    }
+
+    private static CachedUuid getCached(String key) {
+        CachedUuid entry = CACHE.get(key);
+
+        if (entry == null && directory != null) {
+            entry = read(key);
+
+            if (entry != null)
+                CACHE.put(key, entry);
+        }
+
+        if (entry == null)
+            return null;
+
+        long age = System.currentTimeMillis() - entry.time;
+
+        if (age > (entry.uuid.isEmpty() ? NEGATIVE_TTL : TTL))
+            return null;
+
+        return entry;
+    }
+
+    private static void put(String key, String uuid) {
+        CachedUuid entry = new CachedUuid(uuid, System.currentTimeMillis());
+        Path dir;
+
+        synchronized (LOCK) {
+            CACHE.put(key, entry);
+            dir = directory;
+        }
+
+        if (dir == null || !isSafe(key))
+            return;
+
+        // a file per name keeps writes from different instances apart
+        try {
+            Path temp = Files.createTempFile(dir, null, null);
+
+            try {
+                Files.write(temp, (entry.time + "\n" + uuid).getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, dir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            Log.debug("Could not cache the UUID of " + key + ": " + e);
+        }
+    }
+
+    private static CachedUuid read(String key) {
+        if (!isSafe(key))
+            return null;
+
+        Path file = directory.resolve(key);
+
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try {
+            String[] lines = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split("\n", -1);
+            return new CachedUuid(lines[1], Long.parseLong(lines[0]));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // names are used as file names, so anything unusual is only cached in memory
+    private static boolean isSafe(String key) {
+        return key.matches("[a-z0-9_]{1,16}");
+    }
+
+    // offline mode servers allow any name, but accounts can only have these
+    private static boolean isValid(String name) {
+        return name.matches("[A-Za-z0-9_]{1,16}");
+    }
+
+    private static final class CachedUuid {
+        private final String uuid;
+        private final long time;
+
+        CachedUuid(String uuid, long time) {
+            this.uuid = uuid;
+            this.time = time;
+        }
+    }
+
+    private static final class Lookup {
+        private final String name;
+        // guarded by LOCK
+        private boolean taken;
+        private boolean done;
+        private String uuid;
+        private IOException error;
+
+        Lookup(String name) {
+            this.name = name;
+        }
+
+        synchronized void complete(String result, IOException failure) {
+            if (done)
+                return;
+
+            uuid = result;
+            error = failure;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized String await() throws IOException {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while looking up " + name);
+                }
+            }
+
+            if (error != null)
+                throw error;
+
+            return uuid;
+        }
+    }
+}
@@ -36,21 +36,44 @@
 package org.prismlauncher.legacy.utils.url;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 
 public final class ByteArrayUrlConnection extends HttpURLConnection {
     private final InputStream in;
+    private final int code;
 
     public ByteArrayUrlConnection(byte[] data) {
+        this(data, HTTP_OK);
+    }
+
+    private ByteArrayUrlConnection(byte[] data, int code) {
         super(null);
         this.in = new ByteArrayInputStream(data);
+        this.code = code;
+    }
+
+    /**
+     * Creates a connection which responds with 404 Not Found, so that the game
+     * falls back to its default texture.
+     *
+     * @return The connection
+     */
+    public static ByteArrayUrlConnection notFound() {
+        return new ByteArrayUrlConnection(new byte[0], HTTP_NOT_FOUND);
     }
 
     @Override
     public void connect() throws IOException {
-        responseCode = 200;
+        responseCode = code;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        connect();
+        return code;
     }
 
     @Override
@@ -58,6 +81,9 @@ public final class ByteArrayUrlConnection extends HttpURLConnection {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        if (code != HTTP_OK)
+            throw new FileNotFoundException();
+
         return in;
     }
 
@@ -0,0 +1,34 @@
+package org.prismlauncher;
+
+import org.prismlauncher.diagnostics.ClassLoadTimer;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * The entry point when NewLaunch is loaded as a Java agent, with
+ * <code>-javaagent:NewLaunch.jar</code> or by attaching to a running game. The
+ * optional agent argument is the number of seconds without class definitions
+ * after which startup is considered done.
+ */
+public final class Agent {
+    private static final int DEFAULT_QUIET_PERIOD = 10;
+
+    public static void premain(String args, Instrumentation inst) {
+        agentmain(args, inst);
+    }
+
+    public static void agentmain(String args, Instrumentation inst) {
+        int quietPeriod = DEFAULT_QUIET_PERIOD;
+
+        if (args != null && !args.isEmpty()) {
+            try {
+                quietPeriod = Integer.parseInt(args);
+            } catch (NumberFormatException e) {
+                Log.warning("Invalid agent argument '" + args + "', expected the quiet period in seconds");
+            }
+        }
+
+        ClassLoadTimer.install(inst, quietPeriod);
+    }
+}
@@ -54,12 +54,17 @@
 
 package org.prismlauncher;
 
+import org.prismlauncher.diagnostics.ControlChannel;
+import org.prismlauncher.diagnostics.CounterPage;
+import org.prismlauncher.diagnostics.Diagnostics;
 import org.prismlauncher.exception.ParseException;
 import org.prismlauncher.launcher.Launcher;
 import org.prismlauncher.launcher.impl.StandardLauncher;
 import org.prismlauncher.legacy.LegacyProxy;
 import org.prismlauncher.utils.Parameters;
 import org.prismlauncher.utils.logging.Log;
+import org.prismlauncher.utils.logging.Log4jAppender;
+import org.prismlauncher.utils.logging.OutputCapture;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -80,7 +85,10 @@ public final class EntryPoint {
         Parameters params = new Parameters();
         PreLaunchAction action = PreLaunchAction.PROCEED;
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+        // not closed - once the game is launched, it is used to receive commands
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        try {
             while (action == PreLaunchAction.PROCEED) {
                 String line = reader.readLine();
                 if (line != null)
@@ -109,6 +117,10 @@ public final class EntryPoint {
         String launcherType = params.getString("launcher");
 
         try {
+            Log.apply(params);
+            OutputCapture.apply(params);
+            Log4jAppender.apply(params);
+            Diagnostics.apply(params);
             LegacyProxy.applyOnlineFixes(params);
 
             Launcher launcher;
@@ -126,7 +138,10 @@ public final class EntryPoint {
                     throw new IllegalArgumentException("Invalid launcher type: " + launcherType);
             }
 
+            ControlChannel.start(reader);
+            CounterPage.setPhase(CounterPage.Phase.GAME_RUNNING);
             launcher.launch();
+            CounterPage.setPhase(CounterPage.Phase.MAIN_RETURNED);
 
             return ExitCode.NORMAL;
         } catch (IllegalArgumentException e) {
@@ -0,0 +1,210 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long startup takes to define its classes, and attributes the
+ * classes and their bytecode to the jars and packages they come from. Only
+ * available when NewLaunch is loaded with <code>-javaagent</code>.
+ * <p>
+ * Time is not attributed to classes: mod loaders transform classes inside
+ * their own class loaders, before the JVM's transformers see them, so the
+ * jars and packages defining the most bytecode are reported instead. Once no
+ * classes have been defined for a while, startup is considered done, they are
+ * logged and the transformer is removed.
+ */
+public final class ClassLoadTimer {
+    private static final int TOP_ENTRIES = 10;
+    // packages first seen after this many are not tracked
+    private static final int MAX_PACKAGES = 16384;
+    private static final String UNKNOWN_JAR = "(no code source)";
+
+    // recorded into from every thread defining classes, so nothing here takes a lock
+    private static final ConcurrentMap<String, Stats> JARS = new ConcurrentHashMap<>(), PACKAGES = new ConcurrentHashMap<>();
+    private static final Stats TOTAL = new Stats(null);
+
+    private static Instrumentation instrumentation;
+    private static ClassFileTransformer transformer;
+    private static Future<?> quietCheck;
+    private static volatile long lastDefinition;
+    private static boolean reported;
+
+    /**
+     * Starts counting class definitions.
+     *
+     * @param inst        The instrumentation instance given to the agent
+     * @param quietPeriod The time in seconds without any class definitions after
+     *                    which startup is considered done
+     */
+    public static synchronized void install(Instrumentation inst, final int quietPeriod) {
+        if (instrumentation != null)
+            return;
+
+        instrumentation = inst;
+        lastDefinition = System.nanoTime();
+
+        transformer = new ClassFileTransformer() {
+            @Override
+            public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain domain,
+                    byte[] classfileBuffer) {
+                if (classBeingRedefined == null)
+                    record(className, domain, classfileBuffer.length);
+
+                return null;
+            }
+        };
+
+        inst.addTransformer(transformer, false);
+
+        quietCheck = Diagnostics.schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkQuiet(quietPeriod);
+            }
+        }, 1000);
+
+        Diagnostics.onExit(new Runnable() {
+            @Override
+            public void run() {
+                finish();
+            }
+        });
+    }
+
+    private static void record(String className, ProtectionDomain domain, int bytes) {
+        lastDefinition = System.nanoTime();
+
+        String jar = getJar(domain);
+        String pkg = "(default package)";
+
+        if (className != null && className.lastIndexOf('/') != -1)
+            pkg = className.substring(0, className.lastIndexOf('/')).replace('/', '.');
+
+        TOTAL.add(bytes);
+        get(JARS, jar).add(bytes);
+
+        Stats stats = PACKAGES.get(pkg);
+        // checked without a lock, so the limit may be passed by a few packages
+        if (stats == null && PACKAGES.size() < MAX_PACKAGES)
+            stats = get(PACKAGES, pkg);
+
+        if (stats != null)
+            stats.add(bytes);
+    }
+
+    private static String getJar(ProtectionDomain domain) {
+        CodeSource source = domain != null ? domain.getCodeSource() : null;
+        URL location = source != null ? source.getLocation() : null;
+
+        if (location == null)
+            return UNKNOWN_JAR;
+
+        String path = location.getPath();
+
+        if (path.endsWith("/"))
+            path = path.substring(0, path.length() - 1);
+
+        // jar:file:/...!/ and nested locations leave a trailing "!"
+        if (path.endsWith("!"))
+            path = path.substring(0, path.length() - 1);
+
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static Stats get(ConcurrentMap<String, Stats> map, String key) {
+        Stats result = map.get(key);
+
+        if (result == null) {
+            Stats created = new Stats(key);
+            result = map.putIfAbsent(key, created);
+
+            if (result == null)
+                result = created;
+        }
+
+        return result;
+    }
+
+    private static synchronized void checkQuiet(int quietPeriod) {
+        if ((System.nanoTime() - lastDefinition) / 1000000000L >= quietPeriod)
+            finish();
+    }
+
+    private static synchronized void finish() {
+        if (reported)
+            return;
+
+        reported = true;
+
+        instrumentation.removeTransformer(transformer);
+
+        if (quietCheck != null)
+            quietCheck.cancel(false);
+
+        report();
+    }
+
+    private static void report() {
+        StringBuilder builder = new StringBuilder("Class definitions during startup (");
+        long startup = ManagementFactory.getRuntimeMXBean().getUptime() - (System.nanoTime() - lastDefinition) / 1000000;
+
+        builder.append(startup / 1000).append("s): ");
+        builder.append(TOTAL.classes.get()).append(" classes, ").append(Formatting.bytes(TOTAL.bytes.get())).append(" of bytecode");
+
+        appendTop(builder, "Jars", JARS);
+        appendTop(builder, "Packages", PACKAGES);
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void appendTop(StringBuilder builder, String name, Map<String, Stats> map) {
+        List<Stats> stats = new ArrayList<>(map.values());
+
+        Collections.sort(stats, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats a, Stats b) {
+                int result = Long.compare(b.bytes.get(), a.bytes.get());
+                return result != 0 ? result : Long.compare(b.classes.get(), a.classes.get());
+            }
+        });
+
+        builder.append("\n").append(name).append(" defining the most bytecode:");
+
+        for (int index = 0; index < stats.size() && index < TOP_ENTRIES; index++) {
+            Stats entry = stats.get(index);
+
+            builder.append("\n  ").append(Formatting.bytes(entry.bytes.get())).append("  ").append(entry.classes.get());
+            builder.append(" classes  ").append(entry.name);
+        }
+    }
+
+    private static final class Stats {
+        private final String name;
+        private final AtomicLong classes = new AtomicLong(), bytes = new AtomicLong();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(long classBytes) {
+            classes.incrementAndGet();
+            bytes.addAndGet(classBytes);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the monitors threads spend the most time blocked on, which is a common
+ * cause of stutter when mods share locks with the render thread. The JVM only
+ * counts blocking per thread, so locks and their owners are found by sampling
+ * blocked threads.
+ */
+public final class ContentionReport {
+    private static final int DEFAULT_SAMPLE_INTERVAL = 50;
+    private static final int TOP_ENTRIES = 10;
+    // locks first seen after this many are not tracked
+    private static final int MAX_LOCKS = 4096;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Map<String, LockStats> LOCKS = new HashMap<>(), TOTAL_LOCKS = new HashMap<>();
+
+    private static long sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private static boolean enabled;
+    // blocked count and time for each thread at the time of the previous report
+    private static Map<Long, long[]> previous = new HashMap<>();
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("contentionReport", false))
+            return;
+
+        int interval = params.getInt("contentionSampleInterval", DEFAULT_SAMPLE_INTERVAL, 1, Integer.MAX_VALUE);
+
+        if (!THREADS.isThreadContentionMonitoringSupported()) {
+            Log.warning("Thread contention monitoring is not supported on this runtime");
+            return;
+        }
+
+        THREADS.setThreadContentionMonitoringEnabled(true);
+
+        synchronized (ContentionReport.class) {
+            sampleInterval = interval;
+            enabled = true;
+        }
+
+        Diagnostics.schedule(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, interval);
+
+        Diagnostics.scheduleReport(new Diagnostics.Report() {
+            @Override
+            public void report(boolean total) {
+                ContentionReport.report(total);
+            }
+        });
+    }
+
+    private static synchronized void sample() {
+        // a depth of one is enough to show where each thread is blocked
+        for (ThreadInfo info : THREADS.getThreadInfo(THREADS.getAllThreadIds(), 1)) {
+            if (info == null || info.getThreadState() != Thread.State.BLOCKED || info.getLockName() == null)
+                continue;
+
+            String site = info.getStackTrace().length > 0 ? info.getStackTrace()[0].toString() : null;
+
+            record(LOCKS, info, site);
+            record(TOTAL_LOCKS, info, site);
+        }
+    }
+
+    private static void record(Map<String, LockStats> map, ThreadInfo info, String site) {
+        LockStats stats = map.get(info.getLockName());
+
+        if (stats == null) {
+            if (map.size() >= MAX_LOCKS)
+                return;
+
+            stats = new LockStats(info.getLockName());
+            map.put(info.getLockName(), stats);
+        }
+
+        stats.samples++;
+        increment(stats.waiters, info.getThreadName());
+
+        if (info.getLockOwnerName() != null)
+            increment(stats.owners, info.getLockOwnerName());
+
+        if (site != null)
+            increment(stats.sites, site);
+    }
+
+    private static void increment(Map<String, int[]> map, String key) {
+        int[] count = map.get(key);
+
+        if (count == null) {
+            // keep the maps small for locks with many distinct threads
+            if (map.size() >= TOP_ENTRIES * 4)
+                return;
+
+            count = new int[1];
+            map.put(key, count);
+        }
+
+        count[0]++;
+    }
+
+    public static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Logs the threads which were blocked the longest and the most contended
+     * monitors.
+     */
+    public static synchronized void report(boolean total) {
+        StringBuilder builder = new StringBuilder();
+        String period = total ? "since launch" : "since the previous report";
+
+        appendThreads(builder, period, total);
+        appendLocks(builder, period, total ? TOTAL_LOCKS : LOCKS);
+
+        if (!total)
+            LOCKS.clear();
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void appendThreads(StringBuilder builder, String period, boolean total) {
+        final Map<Long, long[]> deltas = new HashMap<>();
+        Map<Long, String> names = new HashMap<>();
+        Map<Long, long[]> current = new HashMap<>();
+
+        for (ThreadInfo info : THREADS.getThreadInfo(THREADS.getAllThreadIds())) {
+            if (info == null)
+                continue;
+
+            long[] values = {info.getBlockedCount(), info.getBlockedTime()};
+            long[] before = previous.get(info.getThreadId());
+
+            current.put(info.getThreadId(), values);
+            names.put(info.getThreadId(), info.getThreadName());
+
+            if (!total && before != null)
+                deltas.put(info.getThreadId(), new long[] {values[0] - before[0], values[1] - before[1]});
+            else
+                deltas.put(info.getThreadId(), values);
+        }
+
+        if (!total)
+            previous = current;
+
+        List<Long> ids = new ArrayList<>(deltas.keySet());
+
+        Collections.sort(ids, new Comparator<Long>() {
+            @Override
+            public int compare(Long a, Long b) {
+                return Long.compare(deltas.get(b)[1], deltas.get(a)[1]);
+            }
+        });
+
+        builder.append("Threads blocked on monitors ").append(period).append(':');
+
+        if (ids.isEmpty() || deltas.get(ids.get(0))[0] <= 0)
+            builder.append("\n  none");
+
+        for (int index = 0; index < ids.size() && index < TOP_ENTRIES; index++) {
+            long[] values = deltas.get(ids.get(index));
+            if (values[0] <= 0)
+                break;
+
+            builder.append("\n  ").append(values[1]).append("ms over ").append(values[0]).append(" blocks  ");
+            builder.append(names.get(ids.get(index)));
+        }
+    }
+
+    private static void appendLocks(StringBuilder builder, String period, Map<String, LockStats> map) {
+        List<LockStats> stats = new ArrayList<>(map.values());
+
+        Collections.sort(stats, new Comparator<LockStats>() {
+            @Override
+            public int compare(LockStats a, LockStats b) {
+                return Integer.compare(b.samples, a.samples);
+            }
+        });
+
+        builder.append("\nMost contended monitors ").append(period).append(':');
+
+        if (stats.isEmpty())
+            builder.append("\n  none");
+
+        for (int index = 0; index < stats.size() && index < TOP_ENTRIES; index++) {
+            LockStats lock = stats.get(index);
+
+            builder.append("\n  ").append(lock.name).append(": about ").append(lock.samples * sampleInterval).append("ms blocked");
+            builder.append("\n    waiting: ").append(top(lock.waiters));
+            builder.append("\n    owned by: ").append(top(lock.owners));
+
+            if (!lock.sites.isEmpty())
+                builder.append("\n    blocked at: ").append(top(lock.sites));
+        }
+    }
+
+    private static String top(final Map<String, int[]> counts) {
+        List<String> keys = new ArrayList<>(counts.keySet());
+
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Integer.compare(counts.get(b)[0], counts.get(a)[0]);
+            }
+        });
+
+        StringBuilder result = new StringBuilder();
+
+        for (int index = 0; index < keys.size() && index < 3; index++) {
+            if (index > 0)
+                result.append(", ");
+
+            result.append(keys.get(index)).append(" (").append(counts.get(keys.get(index))[0]).append(')');
+        }
+
+        if (result.length() == 0)
+            return "unknown";
+
+        return result.toString();
+    }
+
+    private static final class LockStats {
+        private final String name;
+        private final Map<String, int[]> waiters = new HashMap<>(), owners = new HashMap<>(), sites = new HashMap<>();
+        private int samples;
+
+        LockStats(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.JMException;
+
+/**
+ * Keeps reading commands from the launcher on standard input after the game has
+ * been launched, so diagnostics can be collected on demand without jcmd.
+ * Replies are sent through {@link Log}.
+ */
+public final class ControlChannel implements Runnable {
+    private static final int HISTOGRAM_LINES = 50;
+
+    private final BufferedReader reader;
+
+    private ControlChannel(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Starts reading commands on a daemon thread.
+     *
+     * @param reader The reader used for the launch script
+     */
+    public static void start(BufferedReader reader) {
+        Thread thread = new Thread(new ControlChannel(reader), "NewLaunch control channel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.isEmpty())
+                    continue;
+
+                try {
+                    execute(line.split(" +"));
+                } catch (Throwable e) {
+                    Log.error("Command '" + line + "' failed", e);
+                }
+            }
+        } catch (IOException e) {
+            Log.error("Could not read commands from the launcher", e);
+        }
+    }
+
+    private static void execute(String[] args) throws Exception {
+        switch (args[0]) {
+            case "threaddump":
+                threadDump();
+                break;
+
+            case "histogram":
+                histogram();
+                break;
+
+            case "gc":
+                gc();
+                break;
+
+            case "stats":
+                stats();
+                break;
+
+            case "threads":
+                if (ThreadReport.isSupported())
+                    ThreadReport.report(true);
+                else
+                    Log.warning("Thread CPU time is not supported on this runtime");
+
+                break;
+
+            case "contention":
+                if (ContentionReport.isEnabled())
+                    ContentionReport.report(true);
+                else
+                    Log.warning("Contention monitoring is not enabled");
+
+                break;
+
+            case "jitter":
+                if (JitterMeter.isEnabled())
+                    JitterMeter.report(true);
+                else
+                    Log.warning("Jitter meter is not enabled");
+
+                break;
+
+            case "process":
+                if (ProcessStats.isSupported())
+                    ProcessStats.report(true);
+                else
+                    Log.warning("Process statistics are only available on Linux");
+
+                break;
+
+            case "memory":
+                MemoryReport.report();
+                break;
+
+            case "gclog":
+                if (GcLog.isEnabled())
+                    GcLog.report();
+                else
+                    Log.warning("GC logging is not enabled");
+
+                break;
+
+            case "jit":
+                if (JitReport.isSupported())
+                    JitReport.report(true);
+                else
+                    Log.warning("JIT compilation time is not available on this runtime");
+
+                break;
+
+            case "jfr-dump":
+                if (FlightRecorder.isRecording())
+                    Log.launcher("Flight recording written to " + FlightRecorder.dump());
+                else
+                    Log.warning("Flight recording is not running");
+
+                break;
+
+            case "profile":
+                profile(args);
+                break;
+
+            case "help":
+                Log.launcher("Available commands: threaddump, histogram, gc, stats, threads, contention, jitter, process, memory, gclog, jit, "
+                             + "jfr-dump, profile start|stop");
+                break;
+
+            default:
+                Log.warning("Unknown command '" + args[0] + "' - try 'help'");
+                break;
+        }
+    }
+
+    private static void threadDump() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos =
+                threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported());
+        StringBuilder builder = new StringBuilder("Thread dump (" + infos.length + " threads):\n");
+
+        for (ThreadInfo info : infos) {
+            if (info == null)
+                continue;
+
+            builder.append('\n');
+            Formatting.thread(builder, info);
+        }
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void histogram() throws JMException {
+        if (!DiagnosticCommand.isSupported()) {
+            Log.warning("Class histograms are not supported on this runtime");
+            return;
+        }
+
+        String[] lines = DiagnosticCommand.execute("gcClassHistogram").split("\n");
+        StringBuilder builder = new StringBuilder("Class histogram:");
+
+        // the first two lines are the header
+        for (int index = 0; index < lines.length && index < HISTOGRAM_LINES + 2; index++)
+            builder.append('\n').append(lines[index]);
+
+        if (lines.length > HISTOGRAM_LINES + 2)
+            builder.append("\n...\n").append(lines[lines.length - 1]);
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void gc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        long start = System.nanoTime();
+
+        System.gc();
+
+        long taken = System.nanoTime() - start;
+        long after = memory.getHeapMemoryUsage().getUsed();
+
+        Log.launcher("Garbage collection took " + Formatting.millis(taken) + ", heap went from " + Formatting.bytes(before) + " to "
+                     + Formatting.bytes(after));
+    }
+
+    private static void stats() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        StringBuilder builder = new StringBuilder("Statistics:");
+
+        builder.append("\nUptime: ").append(ManagementFactory.getRuntimeMXBean().getUptime() / 1000).append('s');
+        appendUsage(builder, "Heap", memory.getHeapMemoryUsage());
+        appendUsage(builder, "Non-heap", memory.getNonHeapMemoryUsage());
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            builder.append("\nGC ").append(collector.getName()).append(": ").append(collector.getCollectionCount());
+            builder.append(" collections, ").append(collector.getCollectionTime()).append("ms");
+        }
+
+        builder.append("\nThreads: ").append(threads.getThreadCount()).append(" live, ");
+        builder.append(threads.getDaemonThreadCount()).append(" daemon, ").append(threads.getPeakThreadCount()).append(" peak");
+
+        builder.append("\nClasses: ").append(classes.getLoadedClassCount()).append(" loaded, ");
+        builder.append(classes.getUnloadedClassCount()).append(" unloaded");
+
+        long cpuTime = Diagnostics.getProcessCpuTime();
+        if (cpuTime != -1)
+            builder.append("\nCPU time: ").append(cpuTime / 1000000).append("ms");
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void appendUsage(StringBuilder builder, String name, MemoryUsage usage) {
+        builder.append('\n').append(name).append(": ").append(Formatting.bytes(usage.getUsed())).append(" used, ");
+        builder.append(Formatting.bytes(usage.getCommitted())).append(" committed, ");
+        builder.append(Formatting.bytes(usage.getMax())).append(" max");
+    }
+
+    private static void profile(String[] args) {
+        String action = args.length > 1 ? args[1] : "";
+
+        switch (action) {
+            case "start":
+                if (!SamplingProfiler.start())
+                    Log.warning("Sampling profiler is already running");
+
+                break;
+
+            case "stop":
+                if (!SamplingProfiler.isRunning())
+                    Log.warning("Sampling profiler is not running");
+                else
+                    SamplingProfiler.stop();
+
+                break;
+
+            default:
+                Log.warning("Usage: profile start|stop");
+                break;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Instance;
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publishes counters in a memory mapped file in the instance directory, so that
+ * the launcher can poll them as often as it likes without parsing the log.
+ * <p>
+ * The file is {@value #FILE_NAME}, {@value #SIZE} bytes long, and all values
+ * are little endian:
+ *
+ * <pre>
+ * offset  type  value
+ *      0  int   magic, the ASCII bytes "NLCP"
+ *      4  int   layout version, currently 1
+ *      8  long  process ID
+ *     16  long  sequence - incremented before and after each update
+ *     24  long  heartbeat, the wall clock time of the last update in ms
+ *     32  int   phase - 0 starting, 1 game running, 2 main method returned, 3 exiting
+ *     40  long  JVM uptime in ms
+ *     48  long  heap used in bytes
+ *     56  long  heap committed in bytes
+ *     64  long  maximum heap in bytes, or -1 if undefined
+ *     72  long  garbage collections, summed over all collectors
+ *     80  long  time spent in garbage collection in ms
+ *     88  long  process CPU time in ns, or -1 if unavailable
+ *     96  long  live threads
+ * </pre>
+ *
+ * The page is best effort: values are written with plain stores and no memory
+ * fences, which Java 7 offers no way to issue, so another process may see them
+ * in any order and a read can mix two updates. Retrying while the sequence is
+ * odd or changes makes that rare, but does not rule it out, so the values are
+ * only suited to display and rough monitoring.
+ */
+public final class CounterPage {
+    private static final String FILE_NAME = "newlaunch.counters";
+    private static final int SIZE = 4096;
+    private static final int MAGIC = 'N' | 'L' << 8 | 'C' << 16 | 'P' << 24;
+    private static final int VERSION = 1;
+    private static final int DEFAULT_INTERVAL = 1000;
+
+    private static final int PID = 8, SEQUENCE = 16, HEARTBEAT = 24, PHASE = 32, UPTIME = 40, HEAP_USED = 48, HEAP_COMMITTED = 56,
+                             HEAP_MAX = 64, GC_COUNT = 72, GC_TIME = 80, CPU_TIME = 88, THREADS = 96;
+
+    private static MappedByteBuffer buffer;
+    private static long sequence;
+    private static Phase phase = Phase.STARTING;
+
+    // the ordinal is written to the page, so new phases must go at the end
+    public enum Phase {
+        STARTING, GAME_RUNNING, MAIN_RETURNED, EXITING
+    }
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("counterPage", false))
+            return;
+
+        int interval = params.getInt("counterPageInterval", DEFAULT_INTERVAL, 1, Integer.MAX_VALUE);
+
+        Path path = Instance.DIRECTORY.resolve(FILE_NAME);
+
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            synchronized (CounterPage.class) {
+                buffer = mapped;
+
+                // a leftover odd sequence from a crashed run must not stall readers
+                sequence = 0;
+                buffer.putLong(SEQUENCE, sequence);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(PID, Diagnostics.getPid());
+
+                update();
+            }
+        } catch (IOException e) {
+            Log.warning("Could not create the counter page: " + e);
+            return;
+        }
+
+        Diagnostics.schedule(new Runnable() {
+            @Override
+            public void run() {
+                update();
+            }
+        }, interval);
+
+        Diagnostics.onExit(new Runnable() {
+            @Override
+            public void run() {
+                setPhase(Phase.EXITING);
+            }
+        });
+    }
+
+    /**
+     * Records the phase the game is in and updates the counters. Does nothing if
+     * the counter page is not enabled.
+     *
+     * @param newPhase The phase
+     */
+    public static synchronized void setPhase(Phase newPhase) {
+        phase = newPhase;
+        update();
+    }
+
+    private static synchronized void update() {
+        if (buffer == null)
+            return;
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long gcCount = 0, gcTime = 0;
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(collector.getCollectionCount(), 0);
+            gcTime += Math.max(collector.getCollectionTime(), 0);
+        }
+
+        long cpuTime = Diagnostics.getProcessCpuTime();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        // a hint for readers, not a lock: nothing orders these stores for other processes
+        buffer.putLong(SEQUENCE, ++sequence);
+
+        buffer.putLong(HEARTBEAT, System.currentTimeMillis());
+        buffer.putInt(PHASE, phase.ordinal());
+        buffer.putLong(UPTIME, ManagementFactory.getRuntimeMXBean().getUptime());
+        buffer.putLong(HEAP_USED, heap.getUsed());
+        buffer.putLong(HEAP_COMMITTED, heap.getCommitted());
+        buffer.putLong(HEAP_MAX, heap.getMax());
+        buffer.putLong(GC_COUNT, gcCount);
+        buffer.putLong(GC_TIME, gcTime);
+        buffer.putLong(CPU_TIME, cpuTime);
+        buffer.putLong(THREADS, threads);
+
+        buffer.putLong(SEQUENCE, ++sequence);
+    }
+}
@@ -0,0 +1,49 @@
+package org.prismlauncher.diagnostics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A registry of named counters, so that code outside this package (including
+ * the legacy fixes) can report what it did through the metrics endpoint.
+ */
+public final class Counters {
+    private static final ConcurrentMap<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Adds one to a counter, creating it if needed.
+     *
+     * @param name The name of the counter, in snake case, e.g.
+     *             <code>online_fix_skin_requests</code>
+     */
+    public static void increment(String name) {
+        AtomicLong counter = COUNTERS.get(name);
+
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+
+            counter = COUNTERS.putIfAbsent(name, created);
+            if (counter == null)
+                counter = created;
+        }
+
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Gets the current value of every counter.
+     *
+     * @return The counters by name, sorted by name
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> result = new TreeMap<>();
+
+        for (Map.Entry<String, AtomicLong> entry : COUNTERS.entrySet())
+            result.put(entry.getKey(), entry.getValue().get());
+
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+package org.prismlauncher.diagnostics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Runs the diagnostic commands normally used through jcmd, such as
+ * <code>GC.class_histogram</code>. These are exposed by HotSpot through an
+ * MBean from Java 8 onwards, with each command's name converted to camel case.
+ */
+public final class DiagnosticCommand {
+    private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+    private static final String[] SIGNATURE = {String[].class.getName()};
+    private static ObjectName name;
+
+    static {
+        try {
+            ObjectName candidate = new ObjectName("com.sun.management:type=DiagnosticCommand");
+
+            if (SERVER.isRegistered(candidate))
+                name = candidate;
+        } catch (JMException ignored) {
+        }
+    }
+
+    /**
+     * Determines whether diagnostic commands can be run on this runtime.
+     *
+     * @return <code>true</code> if the MBean is available
+     */
+    public static boolean isSupported() {
+        return name != null;
+    }
+
+    /**
+     * Runs a diagnostic command.
+     *
+     * @param operation The command in camel case, e.g.
+     *                  <code>gcClassHistogram</code>
+     * @param args      The arguments, as they would be passed to jcmd
+     * @return The output of the command
+     * @throws JMException If the command does not exist or fails
+     */
+    public static String execute(String operation, String... args) throws JMException {
+        if (name == null)
+            throw new UnsupportedOperationException();
+
+        return (String) SERVER.invoke(name, operation, new Object[] {args}, SIGNATURE);
+    }
+}
@@ -0,0 +1,212 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Instance;
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Sets up the optional diagnostics requested by the launch script. Everything
+ * here is off by default, and nothing should ever prevent the game from
+ * launching.
+ */
+public final class Diagnostics {
+    private static final Path OUTPUT_DIR = Instance.DIRECTORY.resolve("diagnostics");
+    private static final int DEFAULT_REPORT_INTERVAL = 300;
+    // each has a static apply(Parameters); the watchdog is first, so that its exit task runs before the others
+    private static final Class<?>[] COMPONENTS = {ExitWatchdog.class, FlightRecorder.class, SamplingProfiler.class, ThreadReport.class,
+                                                  ContentionReport.class, JitterMeter.class, ProcessStats.class, MemoryReport.class,
+                                                  GcLog.class, JitReport.class, Metrics.class, CounterPage.class, HeapDump.class};
+
+    private static long reportInterval = DEFAULT_REPORT_INTERVAL;
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * A report which is logged periodically and at exit, see
+     * {@link #scheduleReport(Report)}.
+     */
+    public interface Report {
+        /**
+         * @param total <code>true</code> to report totals since launch, rather
+         *              than what happened since the previous periodic report
+         */
+        void report(boolean total);
+    }
+
+    public static void apply(Parameters params) {
+        int interval = params.getInt("reportInterval", DEFAULT_REPORT_INTERVAL, 1, Integer.MAX_VALUE);
+
+        synchronized (Diagnostics.class) {
+            reportInterval = interval;
+        }
+
+        for (Class<?> component : COMPONENTS) {
+            // a failure in one must not stop the others, or the launch
+            try {
+                component.getMethod("apply", Parameters.class).invoke(null, params);
+            } catch (InvocationTargetException e) {
+                Log.error("Could not set up " + component.getSimpleName(), e.getCause());
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                Log.error("Could not set up " + component.getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Runs a task periodically on the shared diagnostics thread, using the report
+     * interval from the launch script.
+     *
+     * @param task The task
+     * @return A future which can be used to cancel the task
+     */
+    public static synchronized Future<?> schedule(final Runnable task) {
+        return schedule(task, reportInterval * 1000);
+    }
+
+    /**
+     * Runs a task periodically on the shared diagnostics thread. The task should
+     * be quick, as it delays everything else scheduled.
+     *
+     * @param task   The task
+     * @param period The time between runs in milliseconds
+     * @return A future which can be used to cancel the task
+     */
+    public static synchronized Future<?> schedule(final Runnable task, long period) {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "NewLaunch diagnostics");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                // an exception would cancel all future runs
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    Log.error("Periodic diagnostics task failed", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a report at the report interval, and once more when the JVM shuts
+     * down.
+     *
+     * @param report The report
+     */
+    public static void scheduleReport(final Report report) {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                report.report(false);
+            }
+        });
+
+        onExit(new Runnable() {
+            @Override
+            public void run() {
+                report.report(true);
+            }
+        });
+    }
+
+    /**
+     * Runs a task when the JVM shuts down, after the tasks added before it and
+     * before the log is closed, see {@link Log#onShutdown(Runnable)}.
+     *
+     * @param task The task
+     */
+    public static void onExit(Runnable task) {
+        Log.onShutdown(task);
+    }
+
+    /**
+     * Creates a path for a new file in the instance's diagnostics directory. The
+     * name is made unique using the current time.
+     *
+     * @param prefix    The start of the file name
+     * @param extension The file extension, without a dot
+     * @return A path which does not exist yet
+     * @throws IOException If the directory could not be created
+     */
+    public static synchronized Path createOutputFile(String prefix, String extension) throws IOException {
+        getOutputDirectory();
+
+        String name = prefix + '-' + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date());
+        Path result = OUTPUT_DIR.resolve(name + '.' + extension);
+
+        for (int index = 1; Files.exists(result); index++)
+            result = OUTPUT_DIR.resolve(name + '-' + index + '.' + extension);
+
+        return result.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Creates the instance's diagnostics directory if needed.
+     *
+     * @return The directory, relative to the working directory
+     * @throws IOException If the directory could not be created
+     */
+    static Path getOutputDirectory() throws IOException {
+        Files.createDirectories(OUTPUT_DIR);
+        return OUTPUT_DIR;
+    }
+
+    /**
+     * Gets the CPU time used by the whole process. This is only available on
+     * HotSpot, through <code>com.sun.management</code>.
+     *
+     * @return The CPU time in nanoseconds, or -1 if unavailable
+     */
+    static long getProcessCpuTime() {
+        try {
+            Object value = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME), "ProcessCpuTime");
+
+            if (value instanceof Long)
+                return (Long) value;
+        } catch (JMException ignored) {
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the ID of this process.
+     *
+     * @return The ID, or -1 if unknown
+     */
+    static long getPid() {
+        // formatted as pid@hostname on HotSpot
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+
+        try {
+            return Long.parseLong(name.substring(0, name.indexOf('@')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
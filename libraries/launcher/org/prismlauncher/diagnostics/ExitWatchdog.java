@@ -0,0 +1,219 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times how long the game takes to exit once it has been asked to, by its
+ * window closing or the JVM shutting down. If it is still running after a grace
+ * period, the threads keeping it alive are logged, and once the exit timeout
+ * is reached, the process is forced to exit with a non-zero status.
+ * <p>
+ * Many games return from the main method while their own threads keep running,
+ * so that does not mean the game is exiting. The threads still running after
+ * the grace period are logged, but the game is never forced to exit by it.
+ */
+public final class ExitWatchdog implements Runnable {
+    private static final int DEFAULT_GRACE_PERIOD = 10;
+    private static final int DEFAULT_TIMEOUT = 30;
+    // how long System.exit gets before the process is halted
+    private static final long HALT_DELAY = 5000;
+    // the game did not exit by itself, so this is not a success
+    private static final int FORCED_STATUS = 1;
+
+    private static long gracePeriod = DEFAULT_GRACE_PERIOD * 1000L, timeout = DEFAULT_TIMEOUT * 1000L;
+    private static String firstEvent, markedEvent, watchedEvent;
+    private static long firstEventTime;
+
+    private final String event;
+    private final long eventTime;
+    // false to only log the live threads after the grace period
+    private final boolean enforce;
+
+    private ExitWatchdog(String event, boolean enforce) {
+        this.event = event;
+        this.enforce = enforce;
+        eventTime = System.nanoTime();
+    }
+
+    public static void apply(Parameters params) {
+        int grace = params.getInt("exitGracePeriod", DEFAULT_GRACE_PERIOD, 1, Integer.MAX_VALUE);
+        // 0 means never force the game to exit
+        int exitTimeout = params.getInt("exitTimeout", DEFAULT_TIMEOUT, 0, Integer.MAX_VALUE);
+
+        synchronized (ExitWatchdog.class) {
+            gracePeriod = grace * 1000L;
+            timeout = exitTimeout * 1000L;
+        }
+
+        Diagnostics.onExit(new Runnable() {
+            @Override
+            public void run() {
+                start("shutdown started");
+            }
+        });
+    }
+
+    /**
+     * Notes something which may lead to the game exiting, so that later events
+     * are logged with the time since it. If the game is still running after the
+     * grace period, the threads keeping it alive are logged, but the exit
+     * timeout does not apply.
+     *
+     * @param event What happened, e.g. <code>main method returned</code>
+     */
+    public static synchronized void mark(String event) {
+        record(event);
+
+        if (markedEvent != null || watchedEvent != null)
+            return;
+
+        markedEvent = event;
+        watch(new ExitWatchdog(event, false));
+    }
+
+    private static void record(String event) {
+        if (firstEvent != null) {
+            Log.launcher("Exit: " + event + " " + (System.nanoTime() - firstEventTime) / 1000000 + "ms after " + firstEvent);
+            return;
+        }
+
+        firstEvent = event;
+        firstEventTime = System.nanoTime();
+    }
+
+    /**
+     * Starts timing the exit of the game, if not already started.
+     *
+     * @param event What caused the game to start exiting, e.g. <code>window
+     *              closed</code>
+     */
+    public static synchronized void start(String event) {
+        record(event);
+
+        if (watchedEvent != null)
+            return;
+
+        watchedEvent = event;
+        watch(new ExitWatchdog(event, true));
+    }
+
+    private static void watch(ExitWatchdog watchdog) {
+        Thread thread = new Thread(watchdog, "NewLaunch exit watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long grace, limit;
+
+        synchronized (ExitWatchdog.class) {
+            grace = gracePeriod;
+            limit = enforce ? timeout : 0;
+        }
+
+        try {
+            Thread.sleep(limit > 0 ? Math.min(grace, limit) : grace);
+
+            if (limit == 0 || grace < limit) {
+                // once the game starts exiting, that watchdog logs the threads instead
+                synchronized (ExitWatchdog.class) {
+                    if (!enforce && watchedEvent != null)
+                        return;
+                }
+
+                logLiveThreads();
+
+                if (limit == 0)
+                    return;
+
+                Thread.sleep(limit - grace);
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        if (isShuttingDown()) {
+            Log.warning("Halting: shutdown did not finish within " + limit / 1000 + "s of " + event);
+            Log.flush();
+            Runtime.getRuntime().halt(FORCED_STATUS);
+        }
+
+        Log.warning("Forcing exit: the game did not exit within " + limit / 1000 + "s of " + event);
+
+        // System.exit blocks until shutdown hooks finish, which may never happen
+        Thread exit = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                System.exit(FORCED_STATUS);
+            }
+        }, "NewLaunch forced exit");
+        exit.setDaemon(true);
+        exit.start();
+
+        try {
+            Thread.sleep(HALT_DELAY);
+        } catch (InterruptedException ignored) {
+        }
+
+        Log.warning("Halting: shutdown did not finish after forcing exit");
+        Log.flush();
+        Runtime.getRuntime().halt(FORCED_STATUS);
+    }
+
+    private void logLiveThreads() {
+        List<Long> ids = new ArrayList<>();
+
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            // DestroyJavaVM is the JVM waiting for the others
+            if (thread.isAlive() && !thread.isDaemon() && !thread.getName().equals("DestroyJavaVM"))
+                ids.add(thread.getId());
+        }
+
+        long[] idArray = new long[ids.size()];
+        for (int index = 0; index < idArray.length; index++)
+            idArray[index] = ids.get(index);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] infos =
+                threads.getThreadInfo(idArray, threads.isObjectMonitorUsageSupported(), threads.isSynchronizerUsageSupported());
+        long elapsed = (System.nanoTime() - eventTime) / 1000000;
+
+        StringBuilder builder = new StringBuilder("Still running " + elapsed + "ms after " + event);
+
+        if (isShuttingDown())
+            builder.append(", waiting for shutdown hooks. Live threads:\n");
+        else
+            builder.append(". Threads keeping the game alive:\n");
+
+        for (ThreadInfo info : infos) {
+            if (info == null)
+                continue;
+
+            builder.append('\n');
+            Formatting.thread(builder, info);
+        }
+
+        Log.warning(builder.toString());
+    }
+
+    private static boolean isShuttingDown() {
+        Thread hook = new Thread();
+
+        // hooks cannot be changed once shutdown has started
+        try {
+            Runtime.getRuntime().addShutdownHook(hook);
+            Runtime.getRuntime().removeShutdownHook(hook);
+            return false;
+        } catch (IllegalStateException e) {
+            return true;
+        }
+    }
+}
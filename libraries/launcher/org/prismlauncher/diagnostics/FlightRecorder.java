@@ -0,0 +1,111 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Records the game with Java Flight Recorder without needing any JVM arguments.
+ * Reflection is used as jdk.jfr is not available on every runtime.
+ */
+public final class FlightRecorder {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    private static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static Object recording;
+    private static MethodHandle dump;
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("jfr", false))
+            return;
+
+        String settings = params.getString("jfrSettings", "default");
+        long maxSize = params.getLong("jfrMaxSize", DEFAULT_MAX_SIZE, 0, Long.MAX_VALUE);
+
+        try {
+            start(settings, maxSize);
+        } catch (ClassNotFoundException e) {
+            Log.warning("Java Flight Recorder is not available on this runtime");
+        } catch (Throwable e) {
+            Log.error("Could not start flight recording", e);
+        }
+    }
+
+    private static synchronized void start(String settings, long maxSize) throws Throwable {
+        Class<?> configurationClass = Class.forName("jdk.jfr.Configuration");
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+
+        // either a path to a .jfc file or the name of a bundled one, such as
+        // "default" or "profile"
+        Object configuration;
+
+        if (settings.endsWith(".jfc")) {
+            MethodType type = MethodType.methodType(configurationClass, Path.class);
+            configuration = LOOKUP.findStatic(configurationClass, "create", type).invoke(Paths.get(settings));
+        } else {
+            MethodType type = MethodType.methodType(configurationClass, String.class);
+            configuration = LOOKUP.findStatic(configurationClass, "getConfiguration", type).invoke(settings);
+        }
+
+        Object result = LOOKUP.findConstructor(recordingClass, MethodType.methodType(void.class, configurationClass)).invoke(configuration);
+        Path destination = Diagnostics.createOutputFile("recording", "jfr");
+
+        findSetter(recordingClass, "setName", String.class).invoke(result, "Prism Launcher");
+        findSetter(recordingClass, "setToDisk", boolean.class).invoke(result, true);
+        findSetter(recordingClass, "setMaxSize", long.class).invoke(result, maxSize);
+        // JFR writes the recording itself when the JVM exits
+        findSetter(recordingClass, "setDestination", Path.class).invoke(result, destination);
+        findSetter(recordingClass, "setDumpOnExit", boolean.class).invoke(result, true);
+
+        LOOKUP.findVirtual(recordingClass, "start", MethodType.methodType(void.class)).invoke(result);
+
+        recording = result;
+        dump = findSetter(recordingClass, "dump", Path.class);
+
+        Log.launcher("Flight recording started; it will be written to " + destination + " on exit");
+    }
+
+    /**
+     * Determines whether a recording is in progress.
+     *
+     * @return <code>true</code> if the game is being recorded
+     */
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes the data recorded so far to a new file, leaving the recording
+     * running.
+     *
+     * @return The file which was written
+     * @throws IOException If the recording could not be written
+     */
+    public static synchronized Path dump() throws IOException {
+        if (recording == null)
+            throw new IllegalStateException("Flight recording is not running");
+
+        Path path = Diagnostics.createOutputFile("recording", "jfr");
+
+        try {
+            dump.invoke(recording, path);
+        } catch (IOException | Error | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AssertionError("dump should not throw", e);
+        }
+
+        return path;
+    }
+
+    private static MethodHandle findSetter(Class<?> clazz, String name, Class<?> type)
+            throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findVirtual(clazz, name, MethodType.methodType(void.class, type));
+    }
+}
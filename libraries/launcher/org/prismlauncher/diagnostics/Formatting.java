@@ -0,0 +1,88 @@
+package org.prismlauncher.diagnostics;
+
+import java.lang.management.LockInfo;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.util.Locale;
+
+/**
+ * Shared formatting for diagnostic output, so that reports look the same.
+ */
+final class Formatting {
+    private static final String[] UNITS = {"B", "KiB", "MiB", "GiB", "TiB"};
+
+    /**
+     * Formats a number of bytes with a binary unit, e.g. <code>1.5 GiB</code>.
+     *
+     * @param bytes The number of bytes
+     * @return A human readable size
+     */
+    static String bytes(long bytes) {
+        if (bytes < 0)
+            return "n/a";
+
+        double value = bytes;
+        int unit = 0;
+
+        while (value >= 1024 && unit < UNITS.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+
+        if (unit == 0)
+            return bytes + " B";
+
+        return String.format(Locale.ROOT, "%.1f %s", value, UNITS[unit]);
+    }
+
+    /**
+     * Formats a duration given in nanoseconds as milliseconds.
+     *
+     * @param nanos The duration
+     * @return The duration in milliseconds, e.g. <code>12.3ms</code>
+     */
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1000000D);
+    }
+
+    /**
+     * Formats a thread with its full stack in the same style as jstack. Unlike
+     * {@link ThreadInfo#toString()}, the stack is not truncated.
+     *
+     * @param builder The builder to append to
+     * @param info    The thread
+     */
+    static void thread(StringBuilder builder, ThreadInfo info) {
+        builder.append('"').append(info.getThreadName()).append("\" #").append(info.getThreadId());
+        builder.append(' ').append(info.getThreadState());
+
+        if (info.getLockName() != null)
+            builder.append(" on ").append(info.getLockName());
+
+        if (info.getLockOwnerName() != null)
+            builder.append(" owned by \"").append(info.getLockOwnerName()).append("\" #").append(info.getLockOwnerId());
+
+        builder.append('\n');
+
+        StackTraceElement[] trace = info.getStackTrace();
+        MonitorInfo[] monitors = info.getLockedMonitors();
+
+        for (int depth = 0; depth < trace.length; depth++) {
+            builder.append("\tat ").append(trace[depth]).append('\n');
+
+            for (MonitorInfo monitor : monitors) {
+                if (monitor.getLockedStackDepth() == depth)
+                    builder.append("\t- locked ").append(monitor).append('\n');
+            }
+        }
+
+        LockInfo[] synchronizers = info.getLockedSynchronizers();
+
+        if (synchronizers.length > 0) {
+            builder.append("\tLocked synchronizers:\n");
+
+            for (LockInfo synchronizer : synchronizers)
+                builder.append("\t- ").append(synchronizer).append('\n');
+        }
+    }
+}
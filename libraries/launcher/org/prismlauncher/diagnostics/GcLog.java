@@ -0,0 +1,266 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+
+/**
+ * Turns on unified GC logging at runtime on Java 9 and later, writing to
+ * rotating files in the instance's diagnostics directory. On request, the
+ * log is summarised into pause percentiles, the allocation rate and the
+ * promotion rate, so that heap settings can be tuned on evidence. The summary
+ * is also written when the game exits unless <code>gcLogSummary</code> is
+ * turned off, and only covers the last {@value #MAX_SUMMARY_SIZE} bytes of the
+ * log so that it does not hold up the exit.
+ */
+public final class GcLog {
+    private static final int DEFAULT_FILE_COUNT = 5;
+    private static final long DEFAULT_FILE_SIZE = 10L * 1024 * 1024;
+    private static final String FILE_NAME = "gc.log";
+    private static final long MAX_SUMMARY_SIZE = 4L * 1024 * 1024;
+
+    // e.g. "[12.345s][1234][info][gc] GC(5) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 3.456ms"
+    private static final Pattern DECORATIONS = Pattern.compile("^\\[([\\d.]+)s\\]\\[(\\d+)\\]\\[\\w+\\s*\\]\\[gc\\s*\\] GC\\(\\d+\\) (.*)$");
+    // ZGC and Shenandoah also print the percentage of the heap
+    private static final Pattern HEAP = Pattern.compile("(\\d+)([KMGT])(?:\\(\\d+%\\))?->(\\d+)([KMGT])");
+    private static final Pattern PAUSE_TIME = Pattern.compile(" ([\\d.]+)ms$");
+
+    private static Path directory;
+    private static String pid;
+
+    public static void apply(Parameters params) {
+        // off by default, as enabling it at runtime delays startup noticeably
+        if (!params.getBoolean("gcLog", false))
+            return;
+
+        int fileCount = params.getInt("gcLogFileCount", DEFAULT_FILE_COUNT, 1, Integer.MAX_VALUE);
+        long fileSize = params.getLong("gcLogFileSize", DEFAULT_FILE_SIZE, 1, Long.MAX_VALUE);
+
+        // VM.log only exists on Java 9 and later
+        if (!DiagnosticCommand.isSupported() || System.getProperty("java.specification.version").startsWith("1."))
+            return;
+
+        try {
+            Path output = Diagnostics.getOutputDirectory();
+
+            // the path is kept relative, as the JVM does not accept spaces here,
+            // which the instance path may contain
+            DiagnosticCommand.execute("vmLog", "output=file=" + output.resolve(FILE_NAME),
+                    "output_options=filecount=" + fileCount + ",filesize=" + fileSize, "what=gc", "decorators=uptime,pid,level,tags");
+
+            synchronized (GcLog.class) {
+                directory = output;
+                pid = String.valueOf(Diagnostics.getPid());
+            }
+        } catch (IOException | JMException e) {
+            Log.warning("Could not enable GC logging: " + e);
+            return;
+        }
+
+        if (!params.getBoolean("gcLogSummary", true))
+            return;
+
+        Diagnostics.onExit(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        });
+    }
+
+    public static synchronized boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Logs a summary of the GC log for this process so far.
+     */
+    public static synchronized void report() {
+        if (directory == null)
+            return;
+
+        Summary summary = new Summary();
+
+        try {
+            List<Path> files = findFiles();
+            long remaining = MAX_SUMMARY_SIZE;
+            int first = files.size();
+
+            // only the end of the log is read, starting partway through the oldest file needed
+            while (first > 0 && remaining > 0)
+                remaining -= Files.size(files.get(--first));
+
+            for (int index = first; index < files.size(); index++)
+                summary.read(files.get(index), pid, index == first ? Math.max(-remaining, 0) : 0);
+        } catch (IOException e) {
+            Log.error("Could not read the GC log", e);
+            return;
+        }
+
+        Log.launcher(summary.toString());
+    }
+
+    private static List<Path> findFiles() throws IOException {
+        List<Path> result = new ArrayList<>();
+
+        // rotated files are named gc.log.0, gc.log.1 and so on
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_NAME + "*")) {
+            for (Path file : files)
+                result.add(file);
+        }
+
+        final List<Long> times = new ArrayList<>();
+        for (Path file : result)
+            times.add(Files.getLastModifiedTime(file).toMillis());
+
+        // oldest first, so the lines are read in order
+        final List<Path> unsorted = new ArrayList<>(result);
+        Collections.sort(result, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Long.compare(times.get(unsorted.indexOf(a)), times.get(unsorted.indexOf(b)));
+            }
+        });
+
+        return result;
+    }
+
+    private static long parseSize(String value, String unit) {
+        long result = Long.parseLong(value);
+
+        switch (unit) {
+            case "T":
+                return result << 40;
+            case "G":
+                return result << 30;
+            case "M":
+                return result << 20;
+            case "K":
+                return result << 10;
+            default:
+                return result;
+        }
+    }
+
+    private static final class Summary {
+        private final Histogram pauses = new Histogram();
+        private long youngPauses, fullPauses, pauseTotal;
+        private long allocated, promoted, lastAfter = -1;
+        private double firstTime = -1, lastTime;
+        private boolean truncated;
+
+        void read(Path file, String pid, long skip) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+
+                if (skip > 0) {
+                    truncated = true;
+                    reader.skip(skip);
+                    // the rest of the line which was skipped into
+                    reader.readLine();
+                }
+
+                while ((line = reader.readLine()) != null) {
+                    Matcher decorations = DECORATIONS.matcher(line);
+
+                    // the files may contain previous runs of the game
+                    if (decorations.matches() && decorations.group(2).equals(pid))
+                        add(Double.parseDouble(decorations.group(1)), decorations.group(3));
+                }
+            }
+        }
+
+        private void add(double time, String event) {
+            if (firstTime == -1)
+                firstTime = time;
+
+            lastTime = time;
+
+            boolean pause = event.startsWith("Pause ");
+            boolean young = event.startsWith("Pause Young");
+
+            if (pause) {
+                Matcher pauseTime = PAUSE_TIME.matcher(event);
+
+                if (pauseTime.find()) {
+                    long micros = Math.round(Double.parseDouble(pauseTime.group(1)) * 1000);
+
+                    pauses.record(micros);
+                    pauseTotal += micros;
+                }
+
+                if (young)
+                    youngPauses++;
+                else if (event.startsWith("Pause Full"))
+                    fullPauses++;
+            }
+
+            Matcher heap = HEAP.matcher(event);
+            if (!heap.find())
+                return;
+
+            long before = parseSize(heap.group(1), heap.group(2));
+            long after = parseSize(heap.group(3), heap.group(4));
+
+            if (lastAfter != -1) {
+                // everything in the heap since the last collection was allocated
+                allocated += Math.max(before - lastAfter, 0);
+
+                // approximate promotion as the growth of the heap over a young
+                // collection, as only the old generation can grow
+                if (young)
+                    promoted += Math.max(after - lastAfter, 0);
+            }
+
+            lastAfter = after;
+        }
+
+        @Override
+        public String toString() {
+            if (firstTime == -1)
+                return "GC summary: no collections were logged";
+
+            double seconds = Math.max(ManagementFactory.getRuntimeMXBean().getUptime() / 1000D, lastTime);
+
+            // rates are over the part of the log which was read
+            if (truncated)
+                seconds = Math.max(lastTime - firstTime, 0.001);
+
+            StringBuilder builder = new StringBuilder("GC summary over ");
+
+            builder.append(Math.round(seconds)).append("s");
+
+            if (truncated)
+                builder.append(" at the end of the log");
+
+            builder.append(':');
+            builder.append("\n  ").append(pauses.count()).append(" pauses (").append(youngPauses).append(" young, ");
+            builder.append(fullPauses).append(" full), ").append(pauseTotal / 1000).append("ms in total");
+            builder.append(String.format(Locale.ROOT, " (%.2f%% of the time)", pauseTotal / 10000D / seconds));
+
+            if (pauses.count() > 0)
+                builder.append("\n  Pause times in ms: ").append(pauses.summary(1000D));
+
+            builder.append("\n  Allocation rate: ").append(Formatting.bytes(Math.round(allocated / seconds))).append("/s");
+            builder.append("\n  Promotion rate (approximate): ").append(Formatting.bytes(Math.round(promoted / seconds))).append("/s");
+
+            return builder.toString();
+        }
+    }
+}
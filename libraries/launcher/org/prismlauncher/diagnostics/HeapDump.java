@@ -0,0 +1,248 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.JMException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Writes a gzip compressed heap dump to the diagnostics directory when the game
+ * runs out of memory, or when the old generation is still above a threshold
+ * after a collection. Only one dump is written per run, and old dumps are
+ * deleted to stay within a size cap and a retention count.
+ */
+public final class HeapDump {
+    private static final String PREFIX = "heap";
+    private static final String EXTENSION = "hprof.gz";
+    private static final int DEFAULT_MAX_SIZE = 2048;
+    private static final int DEFAULT_RETENTION = 3;
+    // gzip typically shrinks heap dumps to a third or less
+    private static final int COMPRESSION_RATIO = 3;
+
+    private static boolean enabled, dumped;
+    private static long maxSize = DEFAULT_MAX_SIZE * 1024L * 1024;
+    private static int retention = DEFAULT_RETENTION;
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("heapDump", false))
+            return;
+
+        int threshold = params.getInt("heapDumpThreshold", 0, 0, 100);
+        int size = params.getInt("heapDumpMaxSize", DEFAULT_MAX_SIZE, 1, Integer.MAX_VALUE);
+        int count = params.getInt("heapDumpRetention", DEFAULT_RETENTION, 1, Integer.MAX_VALUE);
+
+        synchronized (HeapDump.class) {
+            enabled = true;
+            maxSize = size * 1024L * 1024;
+            retention = count;
+        }
+
+        if (threshold > 0)
+            watchOldGeneration(threshold);
+    }
+
+    private static void watchOldGeneration(int threshold) {
+        final List<String> names = new ArrayList<>();
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+
+            // usage after a collection is only meaningful for the old generation
+            if (pool.getType() != MemoryType.HEAP || max <= 0 || !pool.isCollectionUsageThresholdSupported()
+                || !(pool.getName().contains("Old") || pool.getName().contains("Tenured")))
+                continue;
+
+            pool.setCollectionUsageThreshold(max / 100 * threshold);
+            names.add(pool.getName());
+        }
+
+        if (names.isEmpty()) {
+            Log.warning("Heap dump threshold is not supported by this garbage collector");
+            return;
+        }
+
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (!MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+                    return;
+
+                final MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+
+                if (!names.contains(info.getPoolName()))
+                    return;
+
+                // dumping takes a while, so keep it off the notification thread
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        write("'" + info.getPoolName() + "' is above the threshold after garbage collection");
+                    }
+                }, "NewLaunch heap dump");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }, null, null);
+    }
+
+    /**
+     * Writes a heap dump, if enabled, after the game ran out of memory. Call this
+     * from a catch block, then rethrow the error.
+     *
+     * @param error The error
+     */
+    public static void onOutOfMemory(OutOfMemoryError error) {
+        // the caller rethrows the original error, so nothing may replace it
+        try {
+            write("out of memory: " + error.getMessage());
+        } catch (Throwable e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    private static synchronized void write(String reason) {
+        if (!enabled || dumped)
+            return;
+
+        dumped = true;
+
+        try {
+            Path file = Diagnostics.createOutputFile(PREFIX, EXTENSION);
+            long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            long expected = used / COMPRESSION_RATIO;
+            boolean compressInVm = DiagnosticCommand.isSupported() && supportsCompression();
+            // without compression in the JVM, the uncompressed dump and the compressed copy exist together
+            long needed = compressInVm ? expected : used + expected;
+
+            List<Path> dumps = findDumps(file.getParent());
+            long existing = 0;
+
+            for (Path dump : dumps)
+                existing += Files.size(dump);
+
+            // oldest first, to keep within the retention count and make room for the new dump if possible
+            long kept = existing;
+            int stale = 0;
+
+            while (stale < dumps.size() && (dumps.size() - stale >= retention || kept + expected > maxSize))
+                kept -= Files.size(dumps.get(stale++));
+
+            long budget = maxSize - kept;
+
+            if (budget < expected) {
+                Log.warning("Not writing a heap dump (" + reason + "): it would exceed the size cap of " + Formatting.bytes(maxSize));
+                return;
+            }
+
+            if (Files.getFileStore(file.getParent()).getUsableSpace() + existing - kept < needed) {
+                Log.warning("Not writing a heap dump (" + reason + "): not enough free disk space");
+                return;
+            }
+
+            // only now that the new dump is going to be written
+            for (Path dump : dumps.subList(0, stale))
+                Files.delete(dump);
+
+            Log.warning("Writing a heap dump (" + reason + ") to " + file);
+            long start = System.nanoTime();
+
+            if (compressInVm) {
+                // the arguments are joined with spaces, which the instance path may contain
+                Path relative = Paths.get("").toAbsolutePath().relativize(file);
+                DiagnosticCommand.execute("gcHeapDump", "-gz=1", relative.toString());
+            } else
+                dumpAndCompress(file, budget);
+
+            long size = Files.size(file);
+
+            if (size > budget) {
+                Files.delete(file);
+                Log.warning("Deleted the heap dump as it exceeded the size cap (" + Formatting.bytes(size) + ")");
+                return;
+            }
+
+            Log.warning("Heap dump written in " + Formatting.millis(System.nanoTime() - start) + " (" + Formatting.bytes(size) + ")");
+        } catch (IOException | JMException | RuntimeException e) {
+            Log.error("Could not write a heap dump", e);
+        }
+    }
+
+    private static boolean supportsCompression() {
+        // -gz was added to GC.heap_dump in Java 15
+        try {
+            return DiagnosticCommand.execute("help", "GC.heap_dump").contains("-gz");
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    private static void dumpAndCompress(Path file, long budget) throws IOException, JMException {
+        // the JVM insists on the extension
+        Path raw = file.resolveSibling(file.getFileName().toString().replace(EXTENSION, "hprof"));
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName("com.sun.management:type=HotSpotDiagnostic"), "dumpHeap",
+                    new Object[] {raw.toString(), true}, new String[] {String.class.getName(), boolean.class.getName()});
+
+            byte[] buffer = new byte[64 * 1024];
+
+            try (InputStream in = Files.newInputStream(raw); OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+                int read;
+
+                for (int chunk = 1; (read = in.read(buffer)) != -1; chunk++) {
+                    out.write(buffer, 0, read);
+
+                    // stop as soon as the cap is exceeded, checking every 16 MiB
+                    if (chunk % 256 == 0 && Files.size(file) > budget)
+                        throw new IOException("Heap dump exceeded the size cap while compressing");
+                }
+            }
+        } catch (IOException | JMException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            Files.deleteIfExists(raw);
+        }
+    }
+
+    /**
+     * Finds the heap dumps written by previous runs.
+     *
+     * @param directory The diagnostics directory
+     * @return The dumps, oldest first
+     * @throws IOException If the directory could not be listed
+     */
+    private static List<Path> findDumps(Path directory) throws IOException {
+        List<Path> dumps = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "-*." + EXTENSION)) {
+            for (Path file : files)
+                dumps.add(file);
+        }
+
+        // the names contain the date, so this sorts them oldest first
+        Collections.sort(dumps);
+        return dumps;
+    }
+}
@@ -0,0 +1,127 @@
+package org.prismlauncher.diagnostics;
+
+import java.util.Locale;
+
+/**
+ * A histogram of non-negative values with logarithmic buckets, in the style of
+ * HdrHistogram. Values are kept to within about 1.5% of their real value while
+ * covering the whole range of a long in a fixed amount of memory.
+ */
+final class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS, HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private long[] counts = new long[BUCKETS];
+    private long total, sum, max;
+
+    synchronized void record(long value) {
+        if (value < 0)
+            value = 0;
+
+        counts[index(value)]++;
+        total++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    synchronized void add(Histogram other) {
+        synchronized (other) {
+            for (int index = 0; index < counts.length; index++)
+                counts[index] += other.counts[index];
+
+            total += other.total;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Moves everything recorded so far into a new histogram, leaving this one
+     * empty. Nothing recorded at the same time is lost, as the counts are swapped
+     * for fresh ones in one step.
+     *
+     * @return The values recorded before the call
+     */
+    synchronized Histogram takeAll() {
+        Histogram result = new Histogram();
+        result.counts = counts;
+        result.total = total;
+        result.sum = sum;
+        result.max = max;
+
+        counts = new long[BUCKETS];
+        total = sum = max = 0;
+        return result;
+    }
+
+    synchronized long count() {
+        return total;
+    }
+
+    synchronized long max() {
+        return max;
+    }
+
+    synchronized double mean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+
+    /**
+     * Finds the value at a percentile.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return A value which at least that percentage of recorded values are less
+     *         than or equal to
+     */
+    synchronized long percentile(double percentile) {
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+
+            if (seen >= target)
+                return Math.min(highestEquivalent(index), max);
+        }
+
+        return max;
+    }
+
+    /**
+     * Summarises the histogram, e.g.
+     * <code>p50=1.2 p90=3.4 p99=5.6 p99.9=7.8 max=9.0</code>.
+     *
+     * @param divisor The divisor to convert values to the unit displayed
+     * @return The summary
+     */
+    synchronized String summary(double divisor) {
+        return String.format(Locale.ROOT, "p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f", percentile(50) / divisor,
+                percentile(90) / divisor, percentile(99) / divisor, percentile(99.9) / divisor, max / divisor);
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        // leave the top SUB_BUCKET_BITS bits; the highest of these is always set
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    private static long highestEquivalent(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+        long result = ((subBucket + 1) << shift) - 1;
+        // the very last bucket overflows
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+}
@@ -0,0 +1,196 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Tracks the JIT compiler: time spent compiling, when warm-up settles, and how
+ * full the code cache is. Heavily modded games can fill the code cache, after
+ * which the JIT stops compiling and everything quietly gets slower, so a
+ * warning is logged well before that happens.
+ */
+public final class JitReport {
+    // the code cache is considered nearly full past this share of its size
+    private static final double CODE_CACHE_THRESHOLD = 0.9;
+    private static final int WARMUP_CHECK_INTERVAL = 5000;
+    // compilation time is summed over all compiler threads, so this may be above 1
+    private static final double WARMUP_SETTLED_SHARE = 0.05;
+
+    private static final CompilationMXBean COMPILATION = ManagementFactory.getCompilationMXBean();
+
+    private static long previousCompilationTime;
+    private static long warmupCheckTime, warmupCompilationTime;
+    private static Future<?> warmupCheck;
+
+    public static void apply(Parameters params) {
+        // watching the code cache costs nothing until it fills up, so it is on by default
+        if (params.getBoolean("codeCacheWarning", true))
+            watchCodeCache();
+
+        if (!params.getBoolean("jitReport", false))
+            return;
+
+        if (!isSupported()) {
+            Log.warning("JIT compilation time is not available on this runtime");
+            return;
+        }
+
+        synchronized (JitReport.class) {
+            warmupCheckTime = System.nanoTime();
+            warmupCompilationTime = COMPILATION.getTotalCompilationTime();
+
+            warmupCheck = Diagnostics.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    checkWarmup();
+                }
+            }, WARMUP_CHECK_INTERVAL);
+        }
+
+        Diagnostics.scheduleReport(new Diagnostics.Report() {
+            @Override
+            public void report(boolean total) {
+                JitReport.report(total);
+            }
+        });
+    }
+
+    /**
+     * Determines whether compilation time can be measured.
+     *
+     * @return <code>false</code> if the JIT is disabled or does not track time
+     */
+    public static boolean isSupported() {
+        return COMPILATION != null && COMPILATION.isCompilationTimeMonitoringSupported();
+    }
+
+    private static void watchCodeCache() {
+        List<String> watched = new ArrayList<>();
+
+        for (MemoryPoolMXBean pool : getCodeCachePools()) {
+            long max = pool.getUsage().getMax();
+
+            if (max <= 0 || !pool.isUsageThresholdSupported())
+                continue;
+
+            pool.setUsageThreshold((long) (max * CODE_CACHE_THRESHOLD));
+            watched.add(pool.getName());
+
+            // notifications are only sent when the threshold is crossed
+            MemoryUsage usage = pool.getUsage();
+            if (usage.getUsed() >= pool.getUsageThreshold())
+                warnCodeCacheFull(pool.getName(), usage);
+        }
+
+        if (watched.isEmpty())
+            return;
+
+        final List<String> names = watched;
+
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType()))
+                    return;
+
+                MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+
+                if (names.contains(info.getPoolName()))
+                    warnCodeCacheFull(info.getPoolName(), info.getUsage());
+            }
+        }, null, null);
+    }
+
+    private static void warnCodeCacheFull(String pool, MemoryUsage usage) {
+        Log.warning("Code cache '" + pool + "' is " + percentage(usage) + " full (" + Formatting.bytes(usage.getUsed()) + " of "
+                    + Formatting.bytes(usage.getMax()) + ") - once it fills up the JIT compiler stops and the game slows down. "
+                    + "Consider raising -XX:ReservedCodeCacheSize.");
+    }
+
+    private static List<MemoryPoolMXBean> getCodeCachePools() {
+        List<MemoryPoolMXBean> result = new ArrayList<>();
+
+        // a single "Code Cache" on Java 8, and segmented into several "CodeHeap"
+        // pools later unless the code cache is small, in which case it is "CodeCache"
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+
+            if (name.equals("Code Cache") || name.equals("CodeCache") || name.startsWith("CodeHeap"))
+                result.add(pool);
+        }
+
+        return result;
+    }
+
+    private static synchronized void checkWarmup() {
+        long now = System.nanoTime();
+        long compilationTime = COMPILATION.getTotalCompilationTime();
+        double share = (compilationTime - warmupCompilationTime) / ((now - warmupCheckTime) / 1000000D);
+
+        warmupCheckTime = now;
+        warmupCompilationTime = compilationTime;
+
+        if (share >= WARMUP_SETTLED_SHARE || warmupCheck == null)
+            return;
+
+        warmupCheck.cancel(false);
+        warmupCheck = null;
+
+        Log.launcher("JIT warm-up settled after " + ManagementFactory.getRuntimeMXBean().getUptime() / 1000 + "s, having spent "
+                     + compilationTime + "ms compiling");
+    }
+
+    /**
+     * Logs the time spent compiling and the usage of the code cache.
+     */
+    public static synchronized void report(boolean total) {
+        StringBuilder builder = new StringBuilder("JIT compilation (").append(COMPILATION.getName()).append(')');
+        long compilationTime = COMPILATION.getTotalCompilationTime();
+
+        if (total)
+            builder.append(" since launch: ").append(compilationTime).append("ms");
+        else {
+            builder.append(" since the previous report: ").append(compilationTime - previousCompilationTime).append("ms");
+            builder.append(" (").append(compilationTime).append("ms in total)");
+            previousCompilationTime = compilationTime;
+        }
+
+        if (warmupCheck != null)
+            builder.append(", still warming up");
+
+        for (MemoryPoolMXBean pool : getCodeCachePools()) {
+            MemoryUsage usage = pool.getUsage();
+
+            builder.append("\n  ").append(pool.getName()).append(": ").append(Formatting.bytes(usage.getUsed()));
+
+            if (usage.getMax() > 0)
+                builder.append(" used of ").append(Formatting.bytes(usage.getMax())).append(" (").append(percentage(usage)).append(')');
+
+            builder.append(", peak ").append(Formatting.bytes(pool.getPeakUsage().getUsed()));
+
+            if (usage.getMax() > 0 && usage.getUsed() >= usage.getMax() * CODE_CACHE_THRESHOLD)
+                builder.append(" - nearly full!");
+        }
+
+        Log.launcher(builder.toString());
+    }
+
+    private static String percentage(MemoryUsage usage) {
+        return String.format(Locale.ROOT, "%.0f%%", usage.getUsed() * 100D / usage.getMax());
+    }
+}
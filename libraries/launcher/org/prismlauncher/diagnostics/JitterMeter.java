@@ -0,0 +1,86 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+/**
+ * Measures scheduling hiccups as experienced by the game, in the style of
+ * jHiccup. A thread repeatedly sleeps for a short time and records how much
+ * longer than requested it took to wake up, which catches stalls from GC,
+ * swapping, CPU throttling or other processes alike.
+ */
+public final class JitterMeter implements Runnable {
+    private static final int DEFAULT_INTERVAL = 1;
+
+    private static final Histogram INTERVAL_HISTOGRAM = new Histogram(), TOTAL_HISTOGRAM = new Histogram();
+    private static boolean enabled;
+
+    private final long interval;
+
+    private JitterMeter(long interval) {
+        this.interval = interval;
+    }
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("jitterMeter", false))
+            return;
+
+        int interval = params.getInt("jitterInterval", DEFAULT_INTERVAL, 1, Integer.MAX_VALUE);
+
+        Thread thread = new Thread(new JitterMeter(interval), "NewLaunch jitter meter");
+        thread.setDaemon(true);
+        thread.start();
+
+        synchronized (JitterMeter.class) {
+            enabled = true;
+        }
+
+        Diagnostics.scheduleReport(new Diagnostics.Report() {
+            @Override
+            public void report(boolean total) {
+                JitterMeter.report(total);
+            }
+        });
+    }
+
+    public static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Logs percentiles of the hiccups measured.
+     */
+    public static synchronized void report(boolean total) {
+        Histogram histogram;
+
+        if (!total) {
+            histogram = INTERVAL_HISTOGRAM.takeAll();
+            TOTAL_HISTOGRAM.add(histogram);
+        } else {
+            histogram = new Histogram();
+            histogram.add(INTERVAL_HISTOGRAM);
+            histogram.add(TOTAL_HISTOGRAM);
+        }
+
+        String period = total ? "since launch" : "since the previous report";
+
+        Log.launcher("Scheduling hiccups " + period + " in ms over " + histogram.count() + " samples: " + histogram.summary(1000000D));
+    }
+
+    @Override
+    public void run() {
+        long intervalNanos = interval * 1000000L;
+
+        while (true) {
+            long start = System.nanoTime();
+
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            INTERVAL_HISTOGRAM.record(System.nanoTime() - start - intervalNanos);
+        }
+    }
+}
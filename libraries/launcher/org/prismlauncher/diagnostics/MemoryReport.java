@@ -0,0 +1,129 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+
+/**
+ * Reports memory outside the Java heap: direct and mapped NIO buffers, and the
+ * JVM's own native memory when it was started with
+ * <code>-XX:NativeMemoryTracking</code>. Memory allocated directly through
+ * malloc, as LWJGL 3 does, is not visible to either and shows up as the
+ * difference from the resident size instead.
+ */
+public final class MemoryReport {
+    private static final int TOP_CATEGORIES = 8;
+    private static final Pattern TOTAL = Pattern.compile("^Total: reserved=(\\d+)KB, committed=(\\d+)KB", Pattern.MULTILINE);
+    private static final Pattern CATEGORY =
+            Pattern.compile("^-\\s+(.+?) \\(reserved=(\\d+)KB, committed=(\\d+)KB\\)", Pattern.MULTILINE);
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("memoryReport", false))
+            return;
+
+        Diagnostics.schedule(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        });
+
+        Diagnostics.onExit(new Runnable() {
+            @Override
+            public void run() {
+                report();
+            }
+        });
+    }
+
+    /**
+     * Logs the current usage of buffer pools and, if enabled, native memory.
+     */
+    public static synchronized void report() {
+        StringBuilder builder = new StringBuilder("Off-heap memory:");
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        builder.append("\n  Heap: ").append(Formatting.bytes(heap.getCommitted())).append(" committed");
+        builder.append("\n  Non-heap pools: ").append(Formatting.bytes(nonHeap.getCommitted())).append(" committed");
+
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            builder.append("\n  Buffer pool '").append(pool.getName()).append("': ").append(pool.getCount()).append(" buffers, ");
+            builder.append(Formatting.bytes(pool.getMemoryUsed())).append(" used, ");
+            builder.append(Formatting.bytes(pool.getTotalCapacity())).append(" capacity");
+        }
+
+        if (ProcessStats.isSupported()) {
+            ProcessStats.Snapshot process = ProcessStats.read();
+
+            // only compare this with the committed heap, as not all of it is resident
+            if (process != null)
+                builder.append("\n  Resident size of the process: ").append(Formatting.bytes(process.resident));
+        }
+
+        appendNativeMemory(builder);
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void appendNativeMemory(StringBuilder builder) {
+        if (!DiagnosticCommand.isSupported())
+            return;
+
+        String output;
+
+        try {
+            output = DiagnosticCommand.execute("vmNativeMemory", "summary", "scale=KB");
+        } catch (JMException e) {
+            return;
+        }
+
+        Matcher total = TOTAL.matcher(output);
+
+        // most likely "Native memory tracking is not enabled"
+        if (!total.find())
+            return;
+
+        builder.append("\nNative memory tracked by the JVM: ").append(Formatting.bytes(Long.parseLong(total.group(2)) * 1024));
+        builder.append(" committed, ").append(Formatting.bytes(Long.parseLong(total.group(1)) * 1024)).append(" reserved");
+
+        List<Category> categories = new ArrayList<>();
+        Matcher category = CATEGORY.matcher(output);
+
+        while (category.find())
+            categories.add(new Category(category.group(1).trim(), Long.parseLong(category.group(3)) * 1024));
+
+        Collections.sort(categories, new Comparator<Category>() {
+            @Override
+            public int compare(Category a, Category b) {
+                return Long.compare(b.committed, a.committed);
+            }
+        });
+
+        for (int index = 0; index < categories.size() && index < TOP_CATEGORIES; index++) {
+            Category entry = categories.get(index);
+            builder.append("\n  ").append(entry.name).append(": ").append(Formatting.bytes(entry.committed)).append(" committed");
+        }
+    }
+
+    private static final class Category {
+        private final String name;
+        private final long committed;
+
+        Category(String name, long committed) {
+            this.name = name;
+            this.committed = committed;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes metrics about the game's JVM in the OpenMetrics text format, so that
+ * many instances can be scraped by Prometheus or similar. The names follow
+ * those of the Prometheus Java client where there is an equivalent. Metrics are
+ * served over HTTP on localhost, or written to a file in the diagnostics
+ * directory if the runtime lacks <code>jdk.httpserver</code>.
+ */
+public final class Metrics {
+    private static final int DEFAULT_FILE_INTERVAL = 15;
+    private static final String FILE_NAME = "metrics.prom";
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("metrics", false))
+            return;
+
+        // by default, any free port is used and logged
+        int port = params.getInt("metricsPort", 0, 0, 65535);
+        int fileInterval = params.getInt("metricsFileInterval", DEFAULT_FILE_INTERVAL, 1, Integer.MAX_VALUE);
+
+        if (isServerSupported()) {
+            try {
+                Log.launcher("Serving metrics at " + MetricsServer.start(port));
+                return;
+            } catch (IOException | LinkageError e) {
+                Log.warning("Could not start the metrics server, writing metrics to a file instead: " + e);
+            }
+        } else
+            Log.launcher("The runtime lacks jdk.httpserver, writing metrics to " + FILE_NAME + " instead");
+
+        Diagnostics.schedule(new Runnable() {
+            @Override
+            public void run() {
+                writeFile();
+            }
+        }, fileInterval * 1000L);
+
+        writeFile();
+    }
+
+    // checked here, as MetricsServer itself cannot be loaded without jdk.httpserver
+    private static boolean isServerSupported() {
+        try {
+            // jdk.httpserver may be left out of jlinked runtimes
+            Class.forName("com.sun.net.httpserver.HttpServer");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static synchronized void writeFile() {
+        try {
+            Path directory = Diagnostics.getOutputDirectory();
+            Path temp = directory.resolve(FILE_NAME + ".tmp");
+
+            // replace the file in one go so it is never read half written
+            Files.write(temp, render().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, directory.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.error("Could not write metrics", e);
+        }
+    }
+
+    /**
+     * Renders the current metrics.
+     *
+     * @return The metrics in the OpenMetrics text format
+     */
+    static String render() {
+        StringBuilder builder = new StringBuilder();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+        family(builder, "jvm_memory_bytes_used", "gauge", "Used memory");
+        sample(builder, "jvm_memory_bytes_used", "area", "heap", heap.getUsed());
+        sample(builder, "jvm_memory_bytes_used", "area", "nonheap", nonHeap.getUsed());
+
+        family(builder, "jvm_memory_bytes_committed", "gauge", "Committed memory");
+        sample(builder, "jvm_memory_bytes_committed", "area", "heap", heap.getCommitted());
+        sample(builder, "jvm_memory_bytes_committed", "area", "nonheap", nonHeap.getCommitted());
+
+        family(builder, "jvm_memory_bytes_max", "gauge", "Maximum memory");
+        sample(builder, "jvm_memory_bytes_max", "area", "heap", heap.getMax());
+        sample(builder, "jvm_memory_bytes_max", "area", "nonheap", nonHeap.getMax());
+
+        family(builder, "jvm_gc_collection_seconds", "summary", "Time spent in garbage collections");
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(builder, "jvm_gc_collection_seconds_count", "gc", collector.getName(), collector.getCollectionCount());
+            sample(builder, "jvm_gc_collection_seconds_sum", "gc", collector.getName(), collector.getCollectionTime() / 1000D);
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        family(builder, "jvm_threads_current", "gauge", "Live threads");
+        sample(builder, "jvm_threads_current", threads.getThreadCount());
+        family(builder, "jvm_threads_daemon", "gauge", "Live daemon threads");
+        sample(builder, "jvm_threads_daemon", threads.getDaemonThreadCount());
+        family(builder, "jvm_threads_peak", "gauge", "Peak live threads");
+        sample(builder, "jvm_threads_peak", threads.getPeakThreadCount());
+
+        family(builder, "jvm_classes_currently_loaded", "gauge", "Loaded classes");
+        sample(builder, "jvm_classes_currently_loaded", ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        long cpuTime = Diagnostics.getProcessCpuTime();
+
+        if (cpuTime != -1) {
+            family(builder, "process_cpu_seconds", "counter", "CPU time used by the process");
+            sample(builder, "process_cpu_seconds_total", cpuTime / 1000000000D);
+        }
+
+        family(builder, "process_uptime_seconds", "gauge", "Time since the JVM started");
+        sample(builder, "process_uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000D);
+
+        List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+
+        // the samples of each family have to be together
+        family(builder, "jvm_buffer_pool_used_bytes", "gauge", "Memory used by buffers");
+        for (BufferPoolMXBean pool : pools)
+            sample(builder, "jvm_buffer_pool_used_bytes", "pool", pool.getName(), pool.getMemoryUsed());
+
+        family(builder, "jvm_buffer_pool_capacity_bytes", "gauge", "Capacity of buffers");
+        for (BufferPoolMXBean pool : pools)
+            sample(builder, "jvm_buffer_pool_capacity_bytes", "pool", pool.getName(), pool.getTotalCapacity());
+
+        family(builder, "jvm_buffer_pool_used_buffers", "gauge", "Number of buffers");
+        for (BufferPoolMXBean pool : pools)
+            sample(builder, "jvm_buffer_pool_used_buffers", "pool", pool.getName(), pool.getCount());
+
+        for (Map.Entry<String, Long> counter : Counters.snapshot().entrySet()) {
+            String name = "newlaunch_" + counter.getKey();
+
+            family(builder, name, "counter", null);
+            sample(builder, name + "_total", counter.getValue());
+        }
+
+        builder.append("# EOF\n");
+        return builder.toString();
+    }
+
+    private static void family(StringBuilder builder, String name, String type, String help) {
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+
+        if (help != null)
+            builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void sample(StringBuilder builder, String name, Number value) {
+        builder.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder builder, String name, String label, String labelValue, Number value) {
+        builder.append(name).append('{').append(label).append("=\"");
+        builder.append(labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+        builder.append("\"} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,71 @@
+package org.prismlauncher.diagnostics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@link Metrics} over HTTP. This is kept apart so that nothing from
+ * <code>com.sun.net.httpserver</code> is loaded unless it is available: loading
+ * this class fails without it, so {@link Metrics} checks before using it.
+ */
+final class MetricsServer implements HttpHandler {
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /**
+     * Starts serving metrics on localhost.
+     *
+     * @param port The port, or 0 to use any free port
+     * @return The URL metrics are served at
+     * @throws IOException If the port could not be bound
+     */
+    static String start(int port) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new MetricsServer());
+
+        // the dispatcher thread inherits this, and must not keep the game running
+        Thread starter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                server.start();
+            }
+        }, "NewLaunch metrics server");
+        starter.setDaemon(true);
+        starter.start();
+
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return "http://" + server.getAddress().getHostString() + ':' + server.getAddress().getPort() + "/metrics";
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reports process level I/O, page faults and memory from <code>/proc/self</code>
+ * on Linux. Unlike heap statistics, these explain resident memory far above the
+ * maximum heap size and disk thrashing while worlds load.
+ */
+public final class ProcessStats {
+    private static final Path PROC = Paths.get("/proc/self");
+
+    private static Snapshot previous, peak;
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("processStats", false))
+            return;
+
+        if (!isSupported()) {
+            Log.warning("Process statistics are only available on Linux");
+            return;
+        }
+
+        Snapshot initial = read();
+        if (initial == null)
+            return;
+
+        synchronized (ProcessStats.class) {
+            previous = peak = initial;
+        }
+
+        Diagnostics.scheduleReport(new Diagnostics.Report() {
+            @Override
+            public void report(boolean total) {
+                ProcessStats.report(total);
+            }
+        });
+    }
+
+    /**
+     * Determines whether <code>/proc/self</code> can be read.
+     *
+     * @return <code>true</code> on Linux
+     */
+    public static boolean isSupported() {
+        return Files.isReadable(PROC.resolve("io")) && Files.isReadable(PROC.resolve("stat"));
+    }
+
+    /**
+     * Logs I/O and page faults since the previous periodic report (or since
+     * launch) and the current memory and thread counts.
+     */
+    public static synchronized void report(boolean total) {
+        Snapshot current = read();
+        if (current == null)
+            return;
+
+        peak = peak != null ? peak.max(current) : current;
+
+        StringBuilder builder = new StringBuilder("Process statistics ");
+
+        if (total) {
+            builder.append("since launch:");
+            appendCounters(builder, current, null);
+
+            builder.append("\nPeak resident memory: ").append(Formatting.bytes(current.residentPeak));
+            builder.append(", peak swap: ").append(Formatting.bytes(peak.swap));
+            builder.append(", peak threads: ").append(peak.threads).append(", peak open files: ").append(peak.openFiles);
+        } else {
+            builder.append("since the previous report:");
+            appendCounters(builder, current, previous);
+            previous = current;
+        }
+
+        builder.append("\nResident memory: ").append(Formatting.bytes(current.resident));
+        builder.append(", swap: ").append(Formatting.bytes(current.swap));
+        builder.append(", threads: ").append(current.threads).append(", open files: ").append(current.openFiles);
+
+        Log.launcher(builder.toString());
+    }
+
+    private static void appendCounters(StringBuilder builder, Snapshot current, Snapshot before) {
+        double seconds;
+
+        if (before != null)
+            seconds = Math.max(current.time - before.time, 1) / 1000000000D;
+        else
+            seconds = Math.max(ManagementFactory.getRuntimeMXBean().getUptime(), 1) / 1000D;
+
+        builder.append("\nStorage: ");
+        appendRate(builder, "read", current.storageRead - (before != null ? before.storageRead : 0), seconds);
+        builder.append(", ");
+        appendRate(builder, "written", current.storageWritten - (before != null ? before.storageWritten : 0), seconds);
+
+        // includes reads from the page cache, pipes and sockets
+        builder.append("\nAll I/O: ");
+        appendRate(builder, "read", current.charsRead - (before != null ? before.charsRead : 0), seconds);
+        builder.append(", ");
+        appendRate(builder, "written", current.charsWritten - (before != null ? before.charsWritten : 0), seconds);
+
+        long major = current.majorFaults - (before != null ? before.majorFaults : 0);
+        long minor = current.minorFaults - (before != null ? before.minorFaults : 0);
+
+        builder.append("\nPage faults: ").append(major).append(" major (").append(Math.round(major / seconds)).append("/s), ");
+        builder.append(minor).append(" minor (").append(Math.round(minor / seconds)).append("/s)");
+    }
+
+    private static void appendRate(StringBuilder builder, String name, long bytes, double seconds) {
+        builder.append(Formatting.bytes(bytes)).append(' ').append(name);
+        builder.append(" (").append(Formatting.bytes(Math.round(bytes / seconds))).append("/s)");
+    }
+
+    /**
+     * Reads the current statistics.
+     *
+     * @return The statistics, or <code>null</code> if they could not be read
+     */
+    static Snapshot read() {
+        try {
+            Snapshot result = new Snapshot();
+            result.time = System.nanoTime();
+
+            for (String line : Files.readAllLines(PROC.resolve("io"), StandardCharsets.UTF_8)) {
+                String[] pair = line.split(":\\s*", 2);
+                if (pair.length != 2)
+                    continue;
+
+                switch (pair[0]) {
+                    case "rchar":
+                        result.charsRead = Long.parseLong(pair[1]);
+                        break;
+
+                    case "wchar":
+                        result.charsWritten = Long.parseLong(pair[1]);
+                        break;
+
+                    case "read_bytes":
+                        result.storageRead = Long.parseLong(pair[1]);
+                        break;
+
+                    case "write_bytes":
+                        result.storageWritten = Long.parseLong(pair[1]);
+                        break;
+                }
+            }
+
+            // the command name in brackets may contain spaces, so start after it
+            String stat = new String(Files.readAllBytes(PROC.resolve("stat")), StandardCharsets.UTF_8);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            // minflt and majflt are the 10th and 12th fields, and we skipped two
+            result.minorFaults = Long.parseLong(fields[7]);
+            result.majorFaults = Long.parseLong(fields[9]);
+
+            List<String> status = Files.readAllLines(PROC.resolve("status"), StandardCharsets.UTF_8);
+
+            for (String line : status) {
+                String[] pair = line.split(":\\s*", 2);
+                if (pair.length != 2)
+                    continue;
+
+                switch (pair[0]) {
+                    case "VmRSS":
+                        result.resident = parseKilobytes(pair[1]);
+                        break;
+
+                    case "VmHWM":
+                        result.residentPeak = parseKilobytes(pair[1]);
+                        break;
+
+                    case "VmSwap":
+                        result.swap = parseKilobytes(pair[1]);
+                        break;
+
+                    case "Threads":
+                        result.threads = Long.parseLong(pair[1].trim());
+                        break;
+                }
+            }
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(PROC.resolve("fd"))) {
+                for (Path ignored : files)
+                    result.openFiles++;
+            }
+
+            return result;
+        } catch (IOException | RuntimeException e) {
+            Log.error("Could not read process statistics", e);
+            return null;
+        }
+    }
+
+    private static long parseKilobytes(String value) {
+        // e.g. "1540 kB"
+        return Long.parseLong(value.trim().split(" ")[0]) * 1024;
+    }
+
+    static final class Snapshot {
+        long time;
+        long charsRead, charsWritten, storageRead, storageWritten;
+        long minorFaults, majorFaults;
+        long resident, residentPeak, swap, threads, openFiles;
+
+        Snapshot max(Snapshot other) {
+            Snapshot result = new Snapshot();
+
+            result.resident = Math.max(resident, other.resident);
+            result.residentPeak = Math.max(residentPeak, other.residentPeak);
+            result.swap = Math.max(swap, other.swap);
+            result.threads = Math.max(threads, other.threads);
+            result.openFiles = Math.max(openFiles, other.openFiles);
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A portable stack sampling profiler which works on any runtime, including ones
+ * without JFR. The output uses the collapsed stack format understood by flame
+ * graph tools.
+ */
+public final class SamplingProfiler implements Runnable {
+    private static final int DEFAULT_INTERVAL = 20, DEFAULT_CPU_SHARE = 2;
+    // past this many frames across all stacks, new stacks are counted under OVERFLOW
+    private static final int MAX_FRAMES = 1 << 20;
+    private static final String[] OVERFLOW = {"[too many stacks]"};
+
+    private static int defaultInterval = DEFAULT_INTERVAL, defaultCpuShare = DEFAULT_CPU_SHARE;
+    private static SamplingProfiler current;
+    private static boolean exitTaskAdded;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<Stack, int[]> samples = new HashMap<>();
+    // one shared copy of each class.method name, as stacks mostly repeat the same frames
+    private final Map<String, String> frames = new HashMap<>();
+    private final long interval;
+    private final int cpuShare;
+    private volatile boolean running = true;
+    private Thread thread;
+    private int sampleCount;
+    private int frameCount;
+
+    private SamplingProfiler(long interval, int cpuShare) {
+        this.interval = interval;
+        this.cpuShare = cpuShare;
+    }
+
+    public static void apply(Parameters params) {
+        int interval = params.getInt("profilerInterval", DEFAULT_INTERVAL, 1, Integer.MAX_VALUE);
+        int cpuShare = params.getInt("profilerCpuShare", DEFAULT_CPU_SHARE, 1, 100);
+
+        synchronized (SamplingProfiler.class) {
+            defaultInterval = interval;
+            defaultCpuShare = cpuShare;
+        }
+
+        if (params.getBoolean("profiler", false))
+            start();
+    }
+
+    /**
+     * Starts profiling using the settings from the launch script.
+     *
+     * @return <code>true</code> if the profiler was started
+     */
+    public static synchronized boolean start() {
+        return start(defaultInterval, defaultCpuShare);
+    }
+
+    /**
+     * Starts profiling if the profiler is not already running.
+     *
+     * @param interval The minimum time between samples in milliseconds
+     * @param cpuShare The maximum percentage of a core the profiler may use
+     * @return <code>true</code> if the profiler was started
+     */
+    public static synchronized boolean start(long interval, int cpuShare) {
+        if (current != null)
+            return false;
+
+        current = new SamplingProfiler(interval, cpuShare);
+        current.thread = new Thread(current, "NewLaunch profiler");
+        current.thread.setDaemon(true);
+        current.thread.start();
+
+        Log.launcher("Sampling profiler started with an interval of " + interval + "ms");
+
+        // registered once - does nothing if the profiler has already been stopped
+        if (!exitTaskAdded) {
+            Diagnostics.onExit(new Runnable() {
+                @Override
+                public void run() {
+                    stop();
+                }
+            });
+
+            exitTaskAdded = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the profiler and writes the samples collected so far.
+     *
+     * @return The file written, or <code>null</code> if the profiler was not
+     *         running or nothing could be written
+     */
+    public static synchronized Path stop() {
+        if (current == null)
+            return null;
+
+        SamplingProfiler profiler = current;
+        current = null;
+
+        profiler.running = false;
+        profiler.thread.interrupt();
+
+        try {
+            profiler.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            Path path = Diagnostics.createOutputFile("profile", "collapsed");
+            profiler.write(path);
+
+            Log.launcher("Wrote " + profiler.sampleCount + " profiler samples to " + path);
+            return path;
+        } catch (IOException e) {
+            Log.error("Could not write profiler samples", e);
+            return null;
+        }
+    }
+
+    public static synchronized boolean isRunning() {
+        return current != null;
+    }
+
+    @Override
+    public void run() {
+        long self = Thread.currentThread().getId();
+        boolean cpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+        long startTime = System.nanoTime();
+        long used = 0;
+
+        while (running) {
+            long before = cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+            sample(self);
+            used += (cpuTimeSupported ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - before;
+
+            // keep the total time spent sampling within cpuShare% of one core
+            long elapsed = System.nanoTime() - startTime;
+            long delay = Math.max(interval, (used * 100 / cpuShare - elapsed) / 1000000L);
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    private void sample(long self) {
+        ThreadInfo[] infos = threads.dumpAllThreads(false, false);
+
+        synchronized (samples) {
+            for (ThreadInfo info : infos) {
+                // we're only interested in code which is actually running
+                if (info == null || info.getThreadId() == self || info.getThreadState() != Thread.State.RUNNABLE)
+                    continue;
+
+                StackTraceElement[] trace = info.getStackTrace();
+                if (trace.length == 0)
+                    continue;
+
+                Stack stack = new Stack(intern(info.getThreadName()), toFrames(trace));
+                int[] count = samples.get(stack);
+
+                if (count == null) {
+                    if (frameCount + stack.frames.length > MAX_FRAMES)
+                        stack = new Stack(stack.thread, OVERFLOW);
+                    else
+                        frameCount += stack.frames.length;
+
+                    count = samples.get(stack);
+
+                    if (count == null) {
+                        count = new int[1];
+                        samples.put(stack, count);
+                    }
+                }
+
+                count[0]++;
+            }
+
+            sampleCount++;
+        }
+    }
+
+    // line numbers are dropped, so that a method is one frame however it is reached
+    private String[] toFrames(StackTraceElement[] trace) {
+        String[] result = new String[trace.length];
+
+        // collapsed stacks start at the root, whereas stack traces start at the top
+        for (int index = 0; index < trace.length; index++) {
+            StackTraceElement element = trace[trace.length - 1 - index];
+            result[index] = intern(element.getClassName() + '.' + element.getMethodName());
+        }
+
+        return result;
+    }
+
+    private String intern(String frame) {
+        String existing = frames.get(frame);
+
+        if (existing == null) {
+            existing = sanitise(frame);
+            frames.put(frame, existing);
+        }
+
+        return existing;
+    }
+
+    private void write(Path path) throws IOException {
+        StringBuilder line = new StringBuilder();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            synchronized (samples) {
+                for (Map.Entry<Stack, int[]> entry : samples.entrySet()) {
+                    Stack stack = entry.getKey();
+
+                    line.setLength(0);
+                    line.append(stack.thread);
+
+                    for (String frame : stack.frames)
+                        line.append(';').append(frame);
+
+                    line.append(' ').append(entry.getValue()[0]).append('\n');
+                    writer.write(line.toString());
+                }
+            }
+        }
+    }
+
+    private static String sanitise(String frame) {
+        // semicolons separate frames and the final space separates the count
+        return frame.replace(';', '_').replace(' ', '_').replace('\n', '_');
+    }
+
+    private static final class Stack {
+        private final String thread;
+        private final String[] frames;
+        private final int hash;
+
+        Stack(String thread, String[] frames) {
+            this.thread = thread;
+            this.frames = frames;
+            hash = 31 * thread.hashCode() + Arrays.hashCode(frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Stack))
+                return false;
+
+            Stack other = (Stack) obj;
+            return hash == other.hash && thread.equals(other.thread) && Arrays.equals(frames, other.frames);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.prismlauncher.diagnostics;
+
+import org.prismlauncher.utils.Parameters;
+import org.prismlauncher.utils.logging.Log;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ranks threads by the CPU time they used and the memory they allocated, both
+ * since the previous report and since launch. Allocation tracking relies on a
+ * HotSpot extension and is skipped on other runtimes.
+ */
+public final class ThreadReport {
+    private static final int TOP_THREADS = 10;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static MethodHandle getAllocatedBytes;
+
+    // totals for each thread at the time of the previous report
+    private static Map<Long, long[]> previous = new HashMap<>();
+    private static long previousTime = System.nanoTime();
+
+    static {
+        try {
+            Class<?> hotspotThreads = Class.forName("com.sun.management.ThreadMXBean");
+
+            if (hotspotThreads.isInstance(THREADS)) {
+                getAllocatedBytes = MethodHandles.publicLookup()
+                                            .findVirtual(hotspotThreads, "getThreadAllocatedBytes",
+                                                    MethodType.methodType(long[].class, long[].class))
+                                            .bindTo(THREADS);
+            }
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException ignored) {
+        }
+    }
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("threadReport", false))
+            return;
+
+        if (!isSupported()) {
+            Log.warning("Thread CPU time is not supported on this runtime");
+            return;
+        }
+
+        synchronized (ThreadReport.class) {
+            previous = sample(null);
+            previousTime = System.nanoTime();
+        }
+
+        Diagnostics.scheduleReport(new Diagnostics.Report() {
+            @Override
+            public void report(boolean total) {
+                ThreadReport.report(total);
+            }
+        });
+    }
+
+    /**
+     * Determines whether thread CPU time can be measured, enabling it if needed.
+     *
+     * @return <code>true</code> if reports can be made
+     */
+    public static boolean isSupported() {
+        if (!THREADS.isThreadCpuTimeSupported())
+            return false;
+
+        THREADS.setThreadCpuTimeEnabled(true);
+        return true;
+    }
+
+    /**
+     * Logs the threads which used the most CPU time and allocated the most memory.
+     */
+    public static synchronized void report(boolean total) {
+        Map<Long, String> names = new HashMap<>();
+        Map<Long, long[]> current = sample(names);
+        long now = System.nanoTime();
+        long elapsed = total ? ManagementFactory.getRuntimeMXBean().getUptime() * 1000000L : now - previousTime;
+
+        List<Entry> entries = new ArrayList<>();
+
+        for (Map.Entry<Long, long[]> thread : current.entrySet()) {
+            long[] values = thread.getValue().clone();
+            long[] before = previous.get(thread.getKey());
+
+            if (!total && before != null) {
+                for (int index = 0; index < values.length; index++)
+                    values[index] -= before[index];
+            }
+
+            entries.add(new Entry(names.get(thread.getKey()), values[0], values[1]));
+        }
+
+        if (!total) {
+            previous = current;
+            previousTime = now;
+        }
+
+        String period = total ? "since launch" : "over the last " + (elapsed + 500000000L) / 1000000000L + "s";
+        StringBuilder builder = new StringBuilder("Thread CPU time " + period + ":");
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Long.compare(b.cpuTime, a.cpuTime);
+            }
+        });
+
+        for (int index = 0; index < entries.size() && index < TOP_THREADS; index++) {
+            Entry entry = entries.get(index);
+            if (entry.cpuTime <= 0)
+                break;
+
+            builder.append("\n  ").append(Formatting.millis(entry.cpuTime));
+            builder.append(String.format(Locale.ROOT, " (%.1f%% of a core)  ", entry.cpuTime * 100D / Math.max(elapsed, 1)));
+            builder.append(entry.name);
+        }
+
+        if (getAllocatedBytes != null) {
+            builder.append("\nThread allocations ").append(period).append(':');
+
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry a, Entry b) {
+                    return Long.compare(b.allocated, a.allocated);
+                }
+            });
+
+            for (int index = 0; index < entries.size() && index < TOP_THREADS; index++) {
+                Entry entry = entries.get(index);
+                if (entry.allocated <= 0)
+                    break;
+
+                builder.append("\n  ").append(Formatting.bytes(entry.allocated));
+                builder.append(" (").append(Formatting.bytes(entry.allocated * 1000000000L / Math.max(elapsed, 1))).append("/s)  ");
+                builder.append(entry.name);
+            }
+        }
+
+        Log.launcher(builder.toString());
+    }
+
+    private static Map<Long, long[]> sample(Map<Long, String> names) {
+        long[] ids = THREADS.getAllThreadIds();
+        long[] allocated = null;
+
+        if (getAllocatedBytes != null) {
+            try {
+                allocated = (long[]) getAllocatedBytes.invokeExact(ids);
+            } catch (Throwable e) {
+                Log.error("Could not get thread allocations", e);
+                getAllocatedBytes = null;
+            }
+        }
+
+        ThreadInfo[] infos = names != null ? THREADS.getThreadInfo(ids) : null;
+        Map<Long, long[]> result = new HashMap<>();
+
+        for (int index = 0; index < ids.length; index++) {
+            long cpuTime = THREADS.getThreadCpuTime(ids[index]);
+
+            // the thread has died since we got the ids
+            if (cpuTime == -1 || (infos != null && infos[index] == null))
+                continue;
+
+            result.put(ids[index], new long[] {cpuTime, allocated != null ? Math.max(allocated[index], 0) : 0});
+
+            if (names != null)
+                names.put(ids[index], infos[index].getThreadName());
+        }
+
+        return result;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final long cpuTime, allocated;
+
+        Entry(String name, long cpuTime, long allocated) {
+            this.name = name;
+            this.cpuTime = cpuTime;
+            this.allocated = allocated;
+        }
+    }
+}
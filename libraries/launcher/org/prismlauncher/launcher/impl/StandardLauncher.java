@@ -54,6 +54,8 @@
 
 package org.prismlauncher.launcher.impl;
 
+import org.prismlauncher.diagnostics.ExitWatchdog;
+import org.prismlauncher.diagnostics.HeapDump;
 import org.prismlauncher.utils.Parameters;
 import org.prismlauncher.utils.ReflectionUtils;
 
@@ -102,6 +104,14 @@ public final class StandardLauncher extends AbstractLauncher {
 
         // find and invoke the main method
         MethodHandle method = ReflectionUtils.findMainMethod(mainClassName);
-        method.invokeExact(gameArgs.toArray(new String[0]));
+
+        try {
+            method.invokeExact(gameArgs.toArray(new String[0]));
+        } catch (OutOfMemoryError e) {
+            HeapDump.onOutOfMemory(e);
+            throw e;
+        }
+
+        ExitWatchdog.mark("main method returned");
     }
 }
@@ -0,0 +1,18 @@
+package org.prismlauncher.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locations in the instance the game was launched from.
+ */
+public final class Instance {
+    /**
+     * The instance directory, relative to the working directory. The working
+     * directory is the game directory, which is inside the instance.
+     */
+    public static final Path DIRECTORY = Paths.get("..");
+
+    private Instance() {
+    }
+}
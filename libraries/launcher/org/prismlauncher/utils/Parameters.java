@@ -55,6 +55,7 @@
 package org.prismlauncher.utils;
 
 import org.prismlauncher.exception.ParameterNotFoundException;
+import org.prismlauncher.utils.logging.Log;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -111,4 +112,61 @@ public final class Parameters {
 
         return params.get(0);
     }
+
+    // the typed getters are used for optional settings, so bad values fall back to the default instead of stopping the launch
+
+    public boolean getBoolean(String key, boolean def) {
+        String value = getString(key, null);
+
+        if (value == null)
+            return def;
+
+        switch (value) {
+            case "true":
+                return true;
+
+            case "false":
+                return false;
+
+            default:
+                return invalid(key, value, "true|false", def);
+        }
+    }
+
+    public int getInt(String key, int def) {
+        return (int) getLong(key, def, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public int getInt(String key, int def, int min, int max) {
+        return (int) getLong(key, def, min, max);
+    }
+
+    public long getLong(String key, long def) {
+        return getLong(key, def, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public long getLong(String key, long def, long min, long max) {
+        String value = getString(key, null);
+
+        if (value == null)
+            return def;
+
+        long result;
+
+        try {
+            result = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return invalid(key, value, "[integer]", def);
+        }
+
+        if (result < min || result > max)
+            return invalid(key, value, "[" + min + ".." + max + "]", def);
+
+        return result;
+    }
+
+    private static <T> T invalid(String key, String value, String format, T def) {
+        Log.warning("Invalid value '" + value + "' for " + key + ", should match '" + format + "', using " + def);
+        return def;
+    }
 }
@@ -0,0 +1,166 @@
+package org.prismlauncher.utils.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queues messages in a bounded ring buffer, from which a single thread writes
+ * them to another sink in batches. This keeps threads that log from blocking
+ * when the launcher is slow to read the output.
+ */
+final class AsyncSink implements Sink, Runnable {
+    private static final int MAX_BATCH = 512;
+    // give up waiting for the writer if it is stuck on a full pipe
+    private static final long FLUSH_TIMEOUT = 5000;
+    private static final String DROPPED_MESSAGE = " log messages were dropped as the log buffer was full";
+
+    enum Overflow {
+        // wait for space in the buffer
+        BLOCK,
+        // discard the message, and report how many were discarded
+        DROP,
+        // write the message directly, possibly out of order
+        SYNC
+    }
+
+    private final Sink delegate;
+    // held while writing to the delegate, as others write to it directly
+    private final Object lock;
+    private final Overflow overflow;
+    private final BlockingQueue<Record> queue;
+    private final AtomicLong queued = new AtomicLong(), dropped = new AtomicLong();
+
+    private long written;
+    private volatile boolean closed;
+
+    AsyncSink(Sink delegate, Object lock, int capacity, Overflow overflow) {
+        this.delegate = delegate;
+        this.lock = lock;
+        this.overflow = overflow;
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        Thread thread = new Thread(this, "NewLaunch log writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void write(Record record) {
+        if (closed) {
+            writeDirectly(record);
+            return;
+        }
+
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(record);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    writeDirectly(record);
+                    return;
+                }
+
+                break;
+
+            case DROP:
+                if (!queue.offer(record)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+
+                break;
+
+            case SYNC:
+                if (!queue.offer(record)) {
+                    writeDirectly(record);
+                    return;
+                }
+
+                break;
+        }
+
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Waits until everything queued so far has been written.
+     */
+    @Override
+    public void flush() {
+        long target = queued.get();
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT;
+
+        synchronized (this) {
+            while (written < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return;
+
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes out everything queued, after which messages are written directly.
+     * Used when the JVM shuts down, as the writer thread may stop at any time.
+     */
+    void close() {
+        closed = true;
+        flush();
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0)
+            writeDirectly(new Record(Level.WARNING, lost + DROPPED_MESSAGE, null));
+    }
+
+    private void writeDirectly(Record record) {
+        synchronized (lock) {
+            delegate.write(record);
+            delegate.flush();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            synchronized (lock) {
+                for (Record record : batch)
+                    delegate.write(record);
+
+                long lost = dropped.getAndSet(0);
+                if (lost > 0)
+                    delegate.write(new Record(Level.WARNING, lost + DROPPED_MESSAGE, null));
+
+                delegate.flush();
+            }
+
+            synchronized (this) {
+                written += batch.size();
+                notifyAll();
+            }
+
+            batch.clear();
+        }
+    }
+}
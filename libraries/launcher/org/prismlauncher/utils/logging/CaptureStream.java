@@ -0,0 +1,328 @@
+package org.prismlauncher.utils.logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits output into lines, and writes each with the level it appears to be
+ * logged at. This follows the same rules as the log viewer of the launcher.
+ * <p>
+ * log4j XML events span several lines, so they are collected until the end of
+ * the event, and written as a single message in the usual plain text format.
+ * Likewise, the lines of a printed stack trace are added to the line before
+ * them, which is held back until the next line which does not continue it, or
+ * until nothing has been written for a while, see {@link #writeIdle()}.
+ */
+final class CaptureStream extends OutputStream {
+    // longer lines and events are written as they are, to bound memory use
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int MAX_EVENT = 1024 * 1024;
+
+    private static final String EVENT_START = "<log4j:Event ", EVENT_END = "</log4j:Event>";
+    private static final Pattern LOG4J_LINE = Pattern.compile("\\[[0-9:]+\\] \\[[^/]+/([^\\]]+)\\]");
+    private static final String JAVA_SYMBOL = "([a-zA-Z_$][a-zA-Z\\d_$]*\\.)+[a-zA-Z_$][a-zA-Z\\d_$]*";
+    private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("HH:mm:ss");
+        }
+    };
+    private static final Pattern STACK_TRACE = Pattern.compile("\\s+at " + JAVA_SYMBOL + "|Caused by: " + JAVA_SYMBOL
+            + "|([a-zA-Z_$][a-zA-Z\\d_$]*\\.)+[a-zA-Z_$]?[a-zA-Z\\d_$]*(Exception|Error|Throwable)|\\.\\.\\. \\d+ more$");
+
+    // shared by both streams, so that holding a line back does not reorder it with the other stream's lines
+    private static final Object LOCK = new Object();
+    // the last plain line and any stack trace lines after it
+    private static final StringBuilder PENDING = new StringBuilder();
+    private static CaptureStream pendingStream;
+    private static Level pendingLevel;
+    private static boolean pendingIdle;
+
+    private final Level fallback;
+    private final Charset charset = Charset.defaultCharset();
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private final StringBuilder event = new StringBuilder();
+
+    CaptureStream(Level fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void write(int b) {
+        synchronized (LOCK) {
+            if (b == '\n') {
+                endLine();
+                return;
+            }
+
+            line.write(b);
+
+            if (line.size() >= MAX_LINE)
+                endLine();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        synchronized (LOCK) {
+            int end = offset + length;
+
+            for (int index = offset; index < end; index++) {
+                if (bytes[index] != '\n')
+                    continue;
+
+                line.write(bytes, offset, index - offset);
+                endLine();
+                offset = index + 1;
+            }
+
+            line.write(bytes, offset, end - offset);
+
+            if (line.size() >= MAX_LINE)
+                endLine();
+        }
+    }
+
+    /**
+     * Writes out what is left of an unfinished line or event.
+     */
+    @Override
+    public void close() {
+        synchronized (LOCK) {
+            if (line.size() > 0)
+                endLine();
+
+            writePending();
+
+            if (event.length() > 0) {
+                Log.write(new Record(fallback, event.toString(), null));
+                event.setLength(0);
+            }
+        }
+    }
+
+    private void endLine() {
+        String text = new String(line.toByteArray(), charset);
+        line.reset();
+
+        if (text.endsWith("\r"))
+            text = text.substring(0, text.length() - 1);
+
+        if (event.length() > 0 || text.trim().startsWith(EVENT_START)) {
+            writePending();
+
+            if (event.length() > 0)
+                event.append('\n');
+
+            event.append(text);
+
+            if (text.contains(EVENT_END)) {
+                writeEvent(event.toString());
+                event.setLength(0);
+            } else if (event.length() >= MAX_EVENT) {
+                Log.write(new Record(fallback, event.toString(), null));
+                event.setLength(0);
+            }
+
+            return;
+        }
+
+        if (pendingStream == this && PENDING.length() < MAX_EVENT && isContinuation(text)) {
+            PENDING.append('\n').append(text);
+            pendingIdle = false;
+            return;
+        }
+
+        writePending();
+
+        PENDING.append(text);
+        pendingStream = this;
+        pendingLevel = classify(text);
+        pendingIdle = false;
+    }
+
+    private static boolean isContinuation(String text) {
+        String trimmed = text.trim();
+
+        // "\tat ...", "Caused by: ...", "\t... 5 more" and suppressed exceptions indented with tabs
+        return trimmed.startsWith("at ") && Character.isWhitespace(text.charAt(0)) || trimmed.startsWith("Caused by: ")
+            || trimmed.startsWith("Suppressed: ") || trimmed.startsWith("... ") && trimmed.endsWith(" more");
+    }
+
+    /**
+     * Writes the line held back for stack traces, if nothing has been added to it
+     * since the previous call. Called periodically.
+     */
+    static void writeIdle() {
+        synchronized (LOCK) {
+            if (pendingIdle)
+                writePending();
+            else
+                pendingIdle = true;
+        }
+    }
+
+    private static void writePending() {
+        if (pendingStream == null)
+            return;
+
+        Log.write(new Record(pendingLevel, PENDING.toString(), null));
+        PENDING.setLength(0);
+        pendingStream = null;
+        pendingLevel = null;
+    }
+
+    private void writeEvent(String xml) {
+        String message = getElement(xml, "log4j:Message");
+
+        if (message == null) {
+            // not something we understand
+            Log.write(new Record(fallback, xml, null));
+            return;
+        }
+
+        String levelName = getAttribute(xml, "level");
+        String thread = getAttribute(xml, "thread");
+        String timestamp = getAttribute(xml, "timestamp");
+        String throwable = getElement(xml, "log4j:Throwable");
+
+        long time = -1;
+
+        try {
+            time = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            // leave out the time
+        }
+
+        StringBuilder builder = format(time, thread, levelName, message);
+
+        if (throwable != null) {
+            if (!message.endsWith("\n"))
+                builder.append('\n');
+
+            builder.append(throwable);
+        }
+
+        // the launcher trims the trailing line break of each message
+        while (builder.length() > 0 && builder.charAt(builder.length() - 1) == '\n')
+            builder.setLength(builder.length() - 1);
+
+        Level level = fromLog4j(levelName);
+        Log.write(new Record(level != null ? level : fallback, builder.toString(), null));
+
+        OutputCapture.log4jEventWritten();
+    }
+
+    private Level classify(String text) {
+        Level level = null;
+        Matcher matcher = LOG4J_LINE.matcher(text);
+
+        if (matcher.find())
+            level = fromLog4j(matcher.group(1));
+        else {
+            // old style forge logs
+            if (text.contains("[INFO]") || text.contains("[CONFIG]") || text.contains("[FINE]") || text.contains("[FINER]")
+                || text.contains("[FINEST]"))
+                level = Level.MESSAGE;
+            if (text.contains("[SEVERE]") || text.contains("[STDERR]"))
+                level = Level.ERROR;
+            if (text.contains("[WARNING]"))
+                level = Level.WARNING;
+            if (text.contains("[DEBUG]"))
+                level = Level.DEBUG;
+        }
+
+        if (text.contains("overwriting existing"))
+            return Level.FATAL;
+
+        // the pattern is expensive, so only try it where it could match
+        if (text.contains("Exception in thread")
+            || ((text.contains("at ") || text.contains("Caused by: ") || text.contains(" more") || text.contains("Exception")
+                 || text.contains("Error") || text.contains("Throwable"))
+                && STACK_TRACE.matcher(text).find()))
+            return Level.ERROR;
+
+        return level != null ? level : fallback;
+    }
+
+    /**
+     * Formats a log4j event the way the default console layout of the game
+     * does.
+     *
+     * @param time    The time of the event in ms since the epoch, or -1
+     * @param thread  The name of the thread
+     * @param level   The name of the log4j level
+     * @param message The message
+     * @return A builder holding the formatted event
+     */
+    static StringBuilder format(long time, String thread, String level, String message) {
+        StringBuilder builder = new StringBuilder(message.length() + 48);
+
+        if (time != -1)
+            builder.append('[').append(TIME_FORMAT.get().format(new Date(time))).append("] ");
+
+        builder.append('[').append(thread).append('/').append(level).append("]: ").append(message);
+        return builder;
+    }
+
+    static Level fromLog4j(String name) {
+        if (name == null)
+            return null;
+
+        switch (name) {
+            case "INFO":
+                return Level.MESSAGE;
+            case "WARN":
+                return Level.WARNING;
+            case "ERROR":
+                return Level.ERROR;
+            case "FATAL":
+                return Level.FATAL;
+            case "TRACE":
+            case "DEBUG":
+                return Level.DEBUG;
+            default:
+                return null;
+        }
+    }
+
+    private static String getAttribute(String xml, String name) {
+        String start = " " + name + "=\"";
+        int index = xml.indexOf(start);
+
+        if (index == -1)
+            return null;
+
+        index += start.length();
+        int end = xml.indexOf('"', index);
+
+        return end != -1 ? unescape(xml.substring(index, end)) : null;
+    }
+
+    private static String getElement(String xml, String name) {
+        int start = xml.indexOf("<" + name + ">");
+        int end = xml.indexOf("</" + name + ">");
+
+        if (start == -1 || end < start)
+            return null;
+
+        String content = xml.substring(start + name.length() + 2, end);
+
+        if (content.startsWith("<![CDATA[") && content.endsWith("]]>"))
+            return content.substring(9, content.length() - 3);
+
+        return unescape(content);
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') == -1)
+            return text;
+
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -0,0 +1,94 @@
+package org.prismlauncher.utils.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes messages as length prefixed binary records, so that the launcher can
+ * read them without scanning the output for level prefixes. The channel is a
+ * named pipe or file chosen by the launcher, such as <code>/dev/fd/3</code>.
+ * <p>
+ * The stream starts with the ASCII bytes "NLLC" and an int layout version,
+ * currently 1. Each record follows, with all values big endian:
+ *
+ * <pre>
+ * type    value
+ * int     length of the rest of the record in bytes
+ * byte    level - 0 launcher, 1 debug, 2 info, 3 message, 4 warning, 5 error, 6 fatal,
+ *         7 unclassified game output, 8 unclassified game error output
+ * long    monotonic timestamp in ns, relative to an arbitrary point before the first record
+ * int     length of the thread name in bytes
+ * byte[]  thread name, UTF-8
+ * byte[]  message, UTF-8, followed by the stack trace of the error if there is one
+ * </pre>
+ */
+final class ChannelSink implements Sink {
+    private static final int MAGIC = 'N' << 24 | 'L' << 16 | 'L' << 8 | 'C';
+    private static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private boolean broken;
+
+    ChannelSink(OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+    }
+
+    @Override
+    public void write(Record record) {
+        if (broken)
+            return;
+
+        String message = record.getMessage();
+
+        if (record.getError() != null) {
+            StringWriter trace = new StringWriter();
+            trace.append(message).append('\n');
+            record.getError().printStackTrace(new PrintWriter(trace));
+            message = trace.toString();
+        }
+
+        byte[] thread = record.getThreadName().getBytes(StandardCharsets.UTF_8);
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            out.writeInt(1 + 8 + 4 + thread.length + text.length);
+            out.writeByte(record.getLevel().ordinal());
+            out.writeLong(record.getTime());
+            out.writeInt(thread.length);
+            out.write(thread);
+            out.write(text);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (broken)
+            return;
+
+        try {
+            out.flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void close() {
+        // the launcher stopped reading, and messages still go to standard output
+        broken = true;
+
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
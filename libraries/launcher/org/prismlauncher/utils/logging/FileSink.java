@@ -0,0 +1,219 @@
+package org.prismlauncher.utils.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes messages to gzip compressed files, in the same format as standard
+ * output. Compression happens on a separate thread, which is handed chunks of
+ * text through a bounded queue. Once the current file reaches its size limit,
+ * it is rotated: <code>name.log.gz</code> becomes <code>name.1.log.gz</code>
+ * and so on, and the oldest is deleted.
+ * <p>
+ * The compressed stream is flushed every {@value #SYNC_INTERVAL} ms while
+ * there is anything new, so that the file is readable up to that point even if
+ * the process is killed. If writing fails, later messages are dropped.
+ */
+final class FileSink implements Sink, Closeable, Runnable {
+    private static final int QUEUE_SIZE = 256;
+    private static final long SYNC_INTERVAL = 1000;
+    private static final long CLOSE_TIMEOUT = 5000;
+    // queued by close to stop the thread
+    private static final byte[] END = new byte[0];
+
+    private final Path directory;
+    private final String name;
+    private final long maxSize;
+    private final int count;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread thread;
+
+    private CountingStream file;
+    private OutputStream out;
+    private volatile boolean closed;
+
+    /**
+     * Opens the log file, rotating the file of the previous run.
+     *
+     * @param directory The directory to write to
+     * @param name      The name of the files, without extensions
+     * @param maxSize   The size in bytes after which the file is rotated
+     * @param count     The number of files to keep, including the current one
+     * @throws IOException If the file could not be opened
+     */
+    FileSink(Path directory, String name, long maxSize, int count) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.maxSize = maxSize;
+        this.count = count;
+
+        Files.createDirectories(directory);
+        rotate();
+        open();
+
+        thread = new Thread(this, "NewLaunch log file");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void write(Record record) {
+        // nothing would ever take the text out of the buffer
+        if (closed)
+            return;
+
+        StreamSink.append(buffer, record.getLevel(), record.getMessage());
+
+        if (record.getError() != null)
+            StreamSink.appendError(buffer, record.getError());
+    }
+
+    @Override
+    public void flush() {
+        if (closed)
+            buffer.setLength(0);
+
+        if (buffer.length() == 0)
+            return;
+
+        byte[] chunk = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+
+        // slow disks slow down logging rather than losing messages
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out everything queued and finishes the file.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+
+        try {
+            queue.put(END);
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL);
+        boolean unsynced = false;
+
+        try {
+            while (true) {
+                byte[] chunk = queue.poll(Math.max(nextSync - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+
+                if (chunk == END)
+                    break;
+
+                if (chunk != null) {
+                    out.write(chunk);
+                    unsynced = true;
+
+                    if (file.count >= maxSize) {
+                        out.close();
+                        rotate();
+                        open();
+                        unsynced = false;
+                    }
+                }
+
+                // on a schedule rather than when idle, so it also happens while messages keep coming
+                if (System.nanoTime() - nextSync >= 0) {
+                    // make what was written so far readable
+                    if (unsynced)
+                        out.flush();
+
+                    unsynced = false;
+                    nextSync = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL);
+                }
+            }
+
+            out.close();
+        } catch (IOException e) {
+            // stop accepting messages first, as this is logged to the file too
+            closed = true;
+            queue.clear();
+
+            Log.error("Could not write the log file", e);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void open() throws IOException {
+        file = new CountingStream(Files.newOutputStream(getFile(0)));
+        out = new GZIPOutputStream(file, 64 * 1024, true) {
+            {
+                // logs compress well anyway, and this leaves more CPU for the game
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(getFile(count - 1));
+
+        for (int index = count - 2; index >= 0; index--) {
+            Path file = getFile(index);
+
+            if (Files.exists(file))
+                Files.move(file, getFile(index + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path getFile(int index) {
+        return directory.resolve(index == 0 ? name + ".log.gz" : name + "." + index + ".log.gz");
+    }
+
+    private static final class CountingStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count;
+
+        CountingStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            delegate.write(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
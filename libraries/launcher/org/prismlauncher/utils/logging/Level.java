@@ -36,23 +36,33 @@
 package org.prismlauncher.utils.logging;
 
 public enum Level {
+    // the ordinal is written to the log channel, so new levels must go at the end
     LAUNCHER("Launcher"),
     DEBUG("Debug"),
     INFO("Info"),
     MESSAGE("Message"),
     WARNING("Warning"),
     ERROR("Error", true),
-    FATAL("Fatal", true);
+    FATAL("Fatal", true),
+    // output of the game which could not be classified, written without a prefix
+    STDOUT("StdOut", false, false),
+    STDERR("StdErr", true, false);
 
     String name;
     boolean stderr;
+    boolean prefixed;
 
     Level(String name) {
         this(name, false);
     }
 
     Level(String name, boolean stderr) {
+        this(name, stderr, true);
+    }
+
+    Level(String name, boolean stderr, boolean prefixed) {
         this.name = name;
         this.stderr = stderr;
+        this.prefixed = prefixed;
     }
 }
@@ -35,17 +35,271 @@
 
 package org.prismlauncher.utils.logging;
 
+import org.prismlauncher.utils.Instance;
+import org.prismlauncher.utils.Parameters;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Used to print messages with different levels used to colourise the output.
  * Used instead of a logging framework, as the launcher knows how to parse these
  * messages.
+ * <p>
+ * Messages are written synchronously by default. In async mode, they are queued
+ * in a bounded buffer and written in batches by a single thread, which is
+ * drained when the JVM shuts down and whenever a fatal message is logged. The
+ * launcher may also ask for a binary copy of the log on a separate channel, see
+ * {@link ChannelSink}, for repeated messages to be collapsed, see
+ * {@link RepeatFilter}, and for a compressed copy on disk, see {@link FileSink}.
+ * <p>
+ * There is a single shutdown hook, which runs the tasks added with
+ * {@link #onShutdown(Runnable)} and then writes what is left and closes the
+ * sinks, so that nothing logged while shutting down is lost.
  */
 public final class Log {
     // original before possibly overridden by MC
     private static final PrintStream OUT = new PrintStream(System.out), ERR = new PrintStream(System.err);
     private static final boolean DEBUG = Boolean.getBoolean("org.prismlauncher.debug");
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final long CHANNEL_TIMEOUT = 5000;
+    private static final int DEFAULT_FILE_SIZE = 16;
+    private static final int DEFAULT_FILE_COUNT = 5;
+
+    private static final List<Sink> SINKS = new CopyOnWriteArrayList<Sink>(new Sink[] {new StreamSink(OUT, ERR)});
+
+    // writes to all sinks, and is the lock which serialises them
+    private static final Sink FAN_OUT = new Sink() {
+        @Override
+        public void write(Record record) {
+            for (Sink sink : SINKS)
+                sink.write(record);
+        }
+
+        @Override
+        public void flush() {
+            for (Sink sink : SINKS)
+                sink.flush();
+        }
+    };
+
+    // FAN_OUT, possibly behind a RepeatFilter; only used while holding FAN_OUT
+    private static volatile Sink target = FAN_OUT;
+    private static volatile RepeatFilter filter;
+
+    // writes and flushes each message on the calling thread
+    private static final Sink DIRECT = new Sink() {
+        @Override
+        public void write(Record record) {
+            synchronized (FAN_OUT) {
+                target.write(record);
+                target.flush();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+    };
+
+    // DIRECT or an AsyncSink
+    private static volatile Sink output = DIRECT;
+    private static volatile AsyncSink async;
+
+    private static final List<Runnable> SHUTDOWN_TASKS = new ArrayList<>();
+    private static boolean shutdownHookAdded;
+
+    public static void apply(Parameters params) {
+        String channel = params.getString("logChannel", null);
+
+        if (channel != null)
+            openChannel(channel);
+
+        if (params.getBoolean("logFile", false))
+            openFile(params);
+
+        // behind the queue and the sink lock, so it adds no lock of its own in front of them
+        if (params.getBoolean("suppressRepeats", false)) {
+            filter = new RepeatFilter(FAN_OUT);
+            target = filter;
+        }
+
+        if (params.getBoolean("asyncLog", false)) {
+            async = createAsync(params);
+            output = async;
+        }
+
+        addShutdownHook();
+    }
+
+    /**
+     * Runs a task when the JVM shuts down. Tasks are run sequentially in the order
+     * they were added, before the sinks are drained and closed, so they can
+     * still log.
+     *
+     * @param task The task
+     */
+    public static void onShutdown(Runnable task) {
+        synchronized (SHUTDOWN_TASKS) {
+            SHUTDOWN_TASKS.add(task);
+        }
+
+        addShutdownHook();
+    }
+
+    private static void addShutdownHook() {
+        synchronized (SHUTDOWN_TASKS) {
+            if (shutdownHookAdded)
+                return;
+
+            shutdownHookAdded = true;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        }, "NewLaunch shutdown"));
+    }
+
+    private static void shutdown() {
+        // the last line the game printed may still be held back, and came first
+        OutputCapture.close();
+
+        List<Runnable> tasks;
+
+        synchronized (SHUTDOWN_TASKS) {
+            tasks = new ArrayList<>(SHUTDOWN_TASKS);
+        }
+
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                error("Shutdown task failed", e);
+            }
+        }
+
+        // and anything printed since
+        OutputCapture.close();
+
+        AsyncSink queue = async;
+
+        if (queue != null)
+            queue.close();
+
+        // nothing more can be written to files after this
+        synchronized (FAN_OUT) {
+            if (filter != null)
+                filter.summarise();
+
+            for (Sink each : SINKS) {
+                if (each instanceof Closeable) {
+                    try {
+                        ((Closeable) each).close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static void openFile(Parameters params) {
+        int size = params.getInt("logFileSize", DEFAULT_FILE_SIZE, 1, Integer.MAX_VALUE);
+        int count = params.getInt("logFileCount", DEFAULT_FILE_COUNT, 1, Integer.MAX_VALUE);
+
+        try {
+            addSink(new FileSink(Instance.DIRECTORY.resolve("logs"), "newlaunch", size * 1024L * 1024, count));
+        } catch (IOException e) {
+            warning("Could not open the log file: " + e);
+        }
+    }
+
+    private static void openChannel(final String path) {
+        // opening a named pipe blocks until the other end is opened
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    addSink(new ChannelSink(new FileOutputStream(path)));
+                } catch (IOException e) {
+                    warning("Could not open the log channel: " + e);
+                }
+            }
+        }, "NewLaunch log channel");
+        thread.setDaemon(true);
+        thread.start();
+
+        // wait a little so that the first messages are not missed
+        try {
+            thread.join(CHANNEL_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive())
+            warning("The log channel has not been opened for reading yet, messages until then will not be sent to it");
+    }
+
+    private static AsyncSink createAsync(Parameters params) {
+        int bufferSize = params.getInt("logBufferSize", DEFAULT_BUFFER_SIZE, 1, Integer.MAX_VALUE);
+        String overflow = params.getString("logOverflow", "block");
+
+        AsyncSink.Overflow policy;
+
+        switch (overflow) {
+            case "block":
+                policy = AsyncSink.Overflow.BLOCK;
+                break;
+            case "drop":
+                policy = AsyncSink.Overflow.DROP;
+                break;
+            case "sync":
+                policy = AsyncSink.Overflow.SYNC;
+                break;
+            default:
+                warning("Invalid value '" + overflow + "' for logOverflow, should match 'block|drop|sync', using block");
+                policy = AsyncSink.Overflow.BLOCK;
+                break;
+        }
+
+        return new AsyncSink(target, FAN_OUT, bufferSize, policy);
+    }
+
+    /**
+     * Adds a destination which receives every message from now on. It is only
+     * called while holding the lock shared by all sinks.
+     *
+     * @param sink The sink
+     */
+    public static void addSink(Sink sink) {
+        synchronized (FAN_OUT) {
+            SINKS.add(sink);
+        }
+    }
+
+    /**
+     * Waits until all messages logged so far have been written, including how
+     * many times the last one has been repeated.
+     */
+    public static void flush() {
+        output.flush();
+
+        RepeatFilter repeats = filter;
+
+        if (repeats != null) {
+            synchronized (FAN_OUT) {
+                if (repeats.summarise())
+                    FAN_OUT.flush();
+            }
+        }
+    }
 
     public static void launcher(String message) {
         log(message, Level.LAUNCHER);
@@ -64,17 +318,17 @@ public final class Log {
     }
 
     public static void error(String message, Throwable e) {
-        error(message);
-        e.printStackTrace(ERR);
+        log(message, Level.ERROR, e);
     }
 
     public static void fatal(String message) {
-        log(message, Level.FATAL);
+        fatal(message, null);
     }
 
     public static void fatal(String message, Throwable e) {
-        fatal(message);
-        e.printStackTrace(ERR);
+        log(message, Level.FATAL, e);
+        // the process is likely about to exit
+        flush();
     }
 
     /**
@@ -85,18 +339,22 @@ public final class Log {
      * @param level   The level
      */
     public static void log(String message, Level level) {
+        log(message, level, null);
+    }
+
+    private static void log(String message, Level level, Throwable error) {
         if (!DEBUG && level == Level.DEBUG)
             return;
 
-        String prefix = "!![" + level.name + "]!";
-        // prefix first line
-        message = prefix + message;
-        // prefix subsequent lines
-        message = message.replace("\n", "\n" + prefix);
+        write(new Record(level, message, error));
+    }
 
-        if (level.stderr)
-            ERR.println(message);
-        else
-            OUT.println(message);
+    /**
+     * Writes a record to all sinks, regardless of its level.
+     *
+     * @param record The record
+     */
+    static void write(Record record) {
+        output.write(record);
     }
 }
@@ -0,0 +1,257 @@
+package org.prismlauncher.utils.logging;
+
+import org.prismlauncher.utils.Parameters;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.WeakHashMap;
+
+/**
+ * Replaces the XML console appender which the launcher configures for log4j
+ * with one writing straight to {@link Log}, so game log events are neither
+ * serialised to XML nor parsed back by the launcher. log4j is only accessed
+ * through reflection, as it is part of the game rather than NewLaunch.
+ * <p>
+ * Nothing is attached until log4j has been set up by the game: initialising it
+ * early would configure it with NewLaunch's view of the classpath, and with a
+ * context selector the game could end up using another one. Java 7 cannot
+ * tell whether log4j has been initialised without initialising it, so output
+ * is captured, see {@link OutputCapture}, and the first XML event written is
+ * taken as the sign. From then on, the contexts log4j has created are checked
+ * every {@value #POLL_INTERVAL} ms until the appender has been installed, and
+ * it is installed again whenever a context is reconfigured.
+ */
+public final class Log4jAppender implements InvocationHandler {
+    private static final String NAME = "NewLaunch";
+    private static final long POLL_INTERVAL = 250;
+
+    private final ClassLoader loader;
+    private final Class<?> appenderClass;
+    private final Object startedState;
+    private final Method getLevel, getThreadName, getTimeMillis, getMessage, getThrown, getFormattedMessage;
+    private final Method getConfiguration, getRootLogger, getAppenders, removeAppender, addAppender, updateLoggers, getLayout;
+    private final Method isStarted, addPropertyChangeListener, getSelector, getLoggerContexts;
+    private final Class<?> contextFactoryClass;
+    // contexts which have been handled, so they are not held on to once the game drops them
+    private final Set<Object> contexts = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+
+    private Log4jAppender(ClassLoader loader) throws ReflectiveOperationException {
+        this.loader = loader;
+
+        appenderClass = load("org.apache.logging.log4j.core.Appender");
+        startedState = getEnumConstant(load("org.apache.logging.log4j.core.LifeCycle$State"), "STARTED");
+
+        Class<?> event = load("org.apache.logging.log4j.core.LogEvent");
+        getLevel = event.getMethod("getLevel");
+        getThreadName = event.getMethod("getThreadName");
+        getTimeMillis = event.getMethod("getTimeMillis");
+        getMessage = event.getMethod("getMessage");
+        getThrown = event.getMethod("getThrown");
+        getFormattedMessage = load("org.apache.logging.log4j.message.Message").getMethod("getFormattedMessage");
+
+        Class<?> context = load("org.apache.logging.log4j.core.LoggerContext");
+        Class<?> loggerConfig = load("org.apache.logging.log4j.core.config.LoggerConfig");
+        getConfiguration = context.getMethod("getConfiguration");
+        updateLoggers = context.getMethod("updateLoggers");
+        isStarted = context.getMethod("isStarted");
+        addPropertyChangeListener = context.getMethod("addPropertyChangeListener", PropertyChangeListener.class);
+        contextFactoryClass = load("org.apache.logging.log4j.core.impl.Log4jContextFactory");
+        getSelector = contextFactoryClass.getMethod("getSelector");
+        getLoggerContexts = load("org.apache.logging.log4j.core.selector.ContextSelector").getMethod("getLoggerContexts");
+        getRootLogger = load("org.apache.logging.log4j.core.config.Configuration").getMethod("getRootLogger");
+        getAppenders = loggerConfig.getMethod("getAppenders");
+        removeAppender = loggerConfig.getMethod("removeAppender", String.class);
+        addAppender = loggerConfig.getMethod("addAppender", appenderClass, load("org.apache.logging.log4j.Level"),
+                load("org.apache.logging.log4j.core.Filter"));
+        getLayout = appenderClass.getMethod("getLayout");
+    }
+
+    public static void apply(Parameters params) {
+        if (!params.getBoolean("log4jAppender", false))
+            return;
+
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+
+        try {
+            Class.forName("org.apache.logging.log4j.core.LoggerContext", false, loader);
+        } catch (ClassNotFoundException e) {
+            // versions before 1.7 do not use log4j
+            Log.debug("Not installing the log4j appender: log4j is not on the classpath");
+            return;
+        }
+
+        final Log4jAppender handler;
+
+        try {
+            handler = new Log4jAppender(loader);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            Log.error("Could not install the log4j appender", e);
+            return;
+        }
+
+        // the event is being appended, so log4j is left alone until it is done
+        OutputCapture.onLog4jEvent(new Runnable() {
+            @Override
+            public void run() {
+                final Timer timer = new Timer("NewLaunch log4j appender", true);
+                timer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (handler.poll())
+                                timer.cancel();
+                        } catch (ReflectiveOperationException | RuntimeException e) {
+                            Log.error("Could not install the log4j appender", e);
+                            timer.cancel();
+                        }
+                    }
+                }, 0, POLL_INTERVAL);
+            }
+        });
+    }
+
+    /**
+     * Handles the logger contexts which have started, without creating one.
+     * Only called once the game has initialised log4j.
+     *
+     * @return <code>true</code> once there is nothing left to do, as a context
+     *         has been handled or log4j is set up in a way this cannot handle
+     * @throws ReflectiveOperationException If log4j is not as expected
+     */
+    private boolean poll() throws ReflectiveOperationException {
+        // LogManager has already been initialised by the game, and must not be by us otherwise
+        Object factory = load("org.apache.logging.log4j.LogManager").getMethod("getFactory").invoke(null);
+
+        if (!contextFactoryClass.isInstance(factory)) {
+            Log.warning("Not installing the log4j appender: log4j uses " + factory.getClass().getName());
+            return true;
+        }
+
+        // contexts created later are not polled for, only reconfigurations of these
+        for (Object context : (List<?>) getLoggerContexts.invoke(getSelector.invoke(factory))) {
+            if (contexts.contains(context) || !(Boolean) isStarted.invoke(context))
+                continue;
+
+            contexts.add(context);
+            watch(context);
+            install(context);
+        }
+
+        return !contexts.isEmpty();
+    }
+
+    private void watch(final Object context) throws ReflectiveOperationException {
+        addPropertyChangeListener.invoke(context, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                if (!"config".equals(event.getPropertyName()))
+                    return;
+
+                try {
+                    install(context);
+                } catch (ReflectiveOperationException e) {
+                    Log.error("Could not install the log4j appender after reconfiguration", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Replaces the XML console appenders of the root logger.
+     *
+     * @param context The logger context
+     * @return <code>false</code> if there was nothing to replace
+     * @throws ReflectiveOperationException If log4j is not as expected
+     */
+    private synchronized boolean install(Object context) throws ReflectiveOperationException {
+        Object root = getRootLogger.invoke(getConfiguration.invoke(context));
+        Map<?, ?> appenders = (Map<?, ?>) getAppenders.invoke(root);
+
+        if (appenders.containsKey(NAME))
+            return true;
+
+        List<String> replaced = new ArrayList<>();
+
+        for (Map.Entry<?, ?> entry : appenders.entrySet()) {
+            Object appender = entry.getValue();
+            Object layout = getLayout.invoke(appender);
+
+            // Mojang's LegacyXMLLayout or log4j's XmlLayout, written to standard output
+            if (appender.getClass().getSimpleName().equals("ConsoleAppender") && layout != null
+                && layout.getClass().getSimpleName().toLowerCase().contains("xml"))
+                replaced.add((String) entry.getKey());
+        }
+
+        if (replaced.isEmpty()) {
+            Log.warning("Not installing the log4j appender: the log4j configuration has no XML console appender");
+            return false;
+        }
+
+        for (String name : replaced)
+            removeAppender.invoke(root, name);
+
+        Object appender = Proxy.newProxyInstance(loader, new Class<?>[] {appenderClass}, this);
+        addAppender.invoke(root, appender, null, null);
+        updateLoggers.invoke(context);
+
+        Log.launcher("Replaced log4j appenders " + replaced + " with the NewLaunch appender");
+        return true;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "append":
+                append(args[0]);
+                return null;
+            case "getName":
+                return NAME;
+            case "getState":
+                return startedState;
+            case "isStarted":
+            case "ignoreExceptions":
+                return true;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return NAME;
+            default:
+                // lifecycle and error handler methods have nothing to do
+                return method.getReturnType() == boolean.class ? false : null;
+        }
+    }
+
+    private void append(Object event) throws ReflectiveOperationException {
+        String levelName = getLevel.invoke(event).toString();
+        String message = (String) getFormattedMessage.invoke(getMessage.invoke(event));
+        String thread = (String) getThreadName.invoke(event);
+        long time = (long) getTimeMillis.invoke(event);
+
+        Level level = CaptureStream.fromLog4j(levelName);
+        String text = CaptureStream.format(time, thread, levelName, message != null ? message : "null").toString();
+
+        Log.write(new Record(level != null ? level : Level.INFO, text, (Throwable) getThrown.invoke(event)));
+    }
+
+    private Class<?> load(String name) throws ClassNotFoundException {
+        return Class.forName(name, false, loader);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object getEnumConstant(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+}
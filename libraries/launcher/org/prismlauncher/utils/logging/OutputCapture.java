@@ -0,0 +1,81 @@
+package org.prismlauncher.utils.logging;
+
+import org.prismlauncher.utils.Parameters;
+
+import java.io.PrintStream;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replaces the game's standard output and error with streams which classify
+ * each line, and write it with the matching level prefix. Both log4j XML events
+ * and plain text logs are recognised, so the launcher does not have to parse
+ * them itself. Lines which cannot be classified are written unchanged.
+ */
+public final class OutputCapture {
+    private static final long IDLE_CHECK_INTERVAL = 50;
+    private static final AtomicReference<Runnable> LOG4J_LISTENER = new AtomicReference<>();
+
+    private static CaptureStream out, err;
+
+    public static void apply(Parameters params) {
+        if (params.getBoolean("captureOutput", false))
+            start();
+    }
+
+    /**
+     * Captures output if it is not already, and runs a task once, when the first
+     * log4j XML event is written. That event means the game has configured
+     * log4j.
+     *
+     * @param task The task, which is run on the thread which logged the event
+     */
+    static void onLog4jEvent(Runnable task) {
+        LOG4J_LISTENER.set(task);
+        start();
+    }
+
+    static void log4jEventWritten() {
+        Runnable task = LOG4J_LISTENER.getAndSet(null);
+
+        if (task != null)
+            task.run();
+    }
+
+    private static void start() {
+        synchronized (OutputCapture.class) {
+            if (out != null)
+                return;
+
+            out = new CaptureStream(Level.STDOUT);
+            err = new CaptureStream(Level.STDERR);
+        }
+
+        // Log keeps the original streams
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+
+        // lines held back in case a stack trace follows
+        new Timer("NewLaunch output capture", true).schedule(new TimerTask() {
+            @Override
+            public void run() {
+                CaptureStream.writeIdle();
+            }
+        }, IDLE_CHECK_INTERVAL, IDLE_CHECK_INTERVAL);
+    }
+
+    /**
+     * Writes out anything held back, such as a last line without a line break.
+     * Called by {@link Log} when shutting down.
+     */
+    static void close() {
+        synchronized (OutputCapture.class) {
+            if (out == null)
+                return;
+        }
+
+        out.close();
+        err.close();
+    }
+}
@@ -0,0 +1,56 @@
+package org.prismlauncher.utils.logging;
+
+/**
+ * A logged message, along with where and when it was logged.
+ */
+public final class Record {
+    // timestamps are relative to this so they stay small
+    private static final long START = System.nanoTime();
+
+    private final Level level;
+    private final String message;
+    private final Throwable error;
+    private final String threadName;
+    private final long time;
+
+    Record(Level level, String message, Throwable error) {
+        this.level = level;
+        this.message = message;
+        this.error = error;
+        threadName = Thread.currentThread().getName();
+        time = System.nanoTime() - START;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return The message, which may span several lines
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The error to print with the message, or <code>null</code>
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return The name of the thread which logged the message
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return The time the message was logged in nanoseconds, from a monotonic
+     *         clock which starts at about the time NewLaunch was loaded
+     */
+    public long getTime() {
+        return time;
+    }
+}
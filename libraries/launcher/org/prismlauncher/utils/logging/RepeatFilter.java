@@ -0,0 +1,133 @@
+package org.prismlauncher.utils.logging;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Collapses consecutive identical messages, such as a warning logged every
+ * tick or an exception logged in a loop, into a single summary.
+ * The first occurrence is always written straight away, and records are
+ * compared by a 64 bit hash of their content, leaving out the time of day the
+ * game may have prefixed them with.
+ * <p>
+ * Like other sinks, it is only called while holding the lock of the sink it
+ * writes to, and uses the same lock for its timer. Summaries are written once
+ * the messages change, and at least every {@value #SUMMARY_INTERVAL} ms while
+ * they keep repeating.
+ */
+final class RepeatFilter implements Sink {
+    private static final long SUMMARY_INTERVAL = 1000;
+    // "[12:34:56] ", as written by the game and by CaptureStream
+    private static final String TIME_PREFIX = "[00:00:00] ";
+
+    private final Sink delegate;
+
+    private long last;
+    private Level lastLevel;
+    private long repeats, since;
+
+    RepeatFilter(final Sink delegate) {
+        this.delegate = delegate;
+
+        Timer timer = new Timer("NewLaunch log repeats", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                synchronized (delegate) {
+                    if (summarise())
+                        delegate.flush();
+                }
+            }
+        }, SUMMARY_INTERVAL, SUMMARY_INTERVAL);
+    }
+
+    @Override
+    public void write(Record record) {
+        long fingerprint = fingerprint(record);
+
+        if (lastLevel != null && fingerprint == last) {
+            if (repeats++ == 0)
+                since = System.nanoTime();
+
+            return;
+        }
+
+        summarise();
+
+        last = fingerprint;
+        lastLevel = record.getLevel();
+        delegate.write(record);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    /**
+     * Writes the number of times the last message has been repeated since it was
+     * written or last summarised, if any.
+     *
+     * @return <code>true</code> if a summary was written
+     */
+    boolean summarise() {
+        if (repeats == 0)
+            return false;
+
+        long millis = (System.nanoTime() - since) / 1000000;
+        String times = repeats == 1 ? "once" : repeats + " times";
+
+        delegate.write(new Record(lastLevel, "The last message was repeated " + times + " in " + millis + "ms", null));
+        repeats = 0;
+        return true;
+    }
+
+    private static long fingerprint(Record record) {
+        String message = record.getMessage();
+        // the same message logged a second later must still match
+        int start = hasTimePrefix(message) ? TIME_PREFIX.length() : 0;
+
+        long hash = hash(0xcbf29ce484222325L ^ record.getLevel().ordinal(), message, start);
+
+        for (Throwable error = record.getError(); error != null; error = error.getCause()) {
+            hash = hash(hash, error.getClass().getName(), 0);
+            hash = hash(hash, String.valueOf(error.getMessage()), 0);
+
+            for (StackTraceElement element : error.getStackTrace())
+                hash = hash(hash, element.toString(), 0);
+
+            if (error.getCause() == error)
+                break;
+        }
+
+        return hash;
+    }
+
+    private static boolean hasTimePrefix(String message) {
+        if (message.length() < TIME_PREFIX.length())
+            return false;
+
+        for (int index = 0; index < TIME_PREFIX.length(); index++) {
+            char expected = TIME_PREFIX.charAt(index), actual = message.charAt(index);
+
+            if (expected == '0' ? actual < '0' || actual > '9' : actual != expected)
+                return false;
+        }
+
+        return true;
+    }
+
+    // 64 bit FNV-1a
+    private static long hash(long hash, String text, int start) {
+        for (int index = start; index < text.length(); index++) {
+            hash ^= text.charAt(index);
+            hash *= 0x100000001b3L;
+        }
+
+        // separate strings so that "ab", "c" and "a", "bc" differ
+        hash ^= 0xff;
+        hash *= 0x100000001b3L;
+
+        return hash;
+    }
+}
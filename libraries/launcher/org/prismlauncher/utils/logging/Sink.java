@@ -0,0 +1,27 @@
+package org.prismlauncher.utils.logging;
+
+/**
+ * A destination for log messages.
+ * <p>
+ * Sinks added with {@link Log#addSink(Sink)} are only called while holding
+ * Log's internal lock, which also covers closing them at exit, so they need no
+ * locking of their own. They may be called from any thread which logs, or from
+ * the asynchronous writer thread, and should not block for long, as every
+ * other sink waits meanwhile.
+ * <p>
+ * The sinks Log writes through before that lock, such as {@link AsyncSink}, are
+ * called concurrently and must be thread safe.
+ */
+public interface Sink {
+    /**
+     * Accepts a message. It may be buffered until {@link #flush()} is called.
+     *
+     * @param record The message
+     */
+    void write(Record record);
+
+    /**
+     * Writes out any buffered messages.
+     */
+    void flush();
+}
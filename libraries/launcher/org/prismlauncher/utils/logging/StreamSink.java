@@ -0,0 +1,84 @@
+package org.prismlauncher.utils.logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Writes messages to standard output and error with the prefix
+ * <code>!![LEVEL]!</code> on each line, which is picked up by the log viewer
+ * to give it nice colours. Messages are formatted into reused buffers and
+ * written once per flush.
+ */
+final class StreamSink implements Sink {
+    // larger buffers are released after a flush rather than kept forever
+    private static final int MAX_RETAINED = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final PrintStream out, err;
+    private final StringBuilder outBuffer = new StringBuilder(), errBuffer = new StringBuilder();
+
+    StreamSink(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    @Override
+    public void write(Record record) {
+        append(record.getLevel().stderr ? errBuffer : outBuffer, record.getLevel(), record.getMessage());
+
+        if (record.getError() != null)
+            appendError(errBuffer, record.getError());
+    }
+
+    /**
+     * Appends a message with each line prefixed.
+     *
+     * @param buffer  The buffer
+     * @param level   The level
+     * @param message The message
+     */
+    static void append(StringBuilder buffer, Level level, String message) {
+        String prefix = level.prefixed ? "!![" + level.name + "]!" : "";
+        int start = 0, end;
+
+        // prefix each line
+        while ((end = message.indexOf('\n', start)) != -1) {
+            buffer.append(prefix).append(message, start, end + 1);
+            start = end + 1;
+        }
+
+        buffer.append(prefix).append(message, start, message.length()).append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Appends the stack trace of an error.
+     *
+     * @param buffer The buffer
+     * @param error  The error
+     */
+    static void appendError(StringBuilder buffer, Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        buffer.append(trace.getBuffer());
+    }
+
+    @Override
+    public void flush() {
+        flush(outBuffer, out);
+        flush(errBuffer, err);
+    }
+
+    private static void flush(StringBuilder buffer, PrintStream stream) {
+        if (buffer.length() == 0)
+            return;
+
+        stream.print(buffer);
+        stream.flush();
+
+        buffer.setLength(0);
+
+        if (buffer.capacity() > MAX_RETAINED)
+            buffer.trimToSize();
+    }
+}